@@ -2,6 +2,13 @@ package com.ssicecreamsshop;
 
 import com.ssicecreamsshop.config.ConfigManager;
 import com.ssicecreamsshop.utils.GlobalStatusManager;
+import com.ssicecreamsshop.utils.MenuFileWatcher;
+import com.ssicecreamsshop.utils.MenuRepository;
+import com.ssicecreamsshop.utils.MenuThumbnails;
+import com.ssicecreamsshop.utils.OrderExcelUtil;
+import com.ssicecreamsshop.utils.OrderPersistenceService;
+import com.ssicecreamsshop.utils.OrderRepository;
+import com.ssicecreamsshop.utils.StockLedger;
 import com.ssicecreamsshop.utils.TelegramBotService;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -46,6 +53,13 @@ public class AppLauncher extends Application {
         }
 
         ConfigManager.ensureDefaultPathsExist();
+        MenuFileWatcher.start();
+        MenuThumbnails.backfill();
+        OrderExcelUtil.startScheduledExport();
+        OrderRepository.startBackgroundCompaction();
+        Thread orderPreloadThread = new Thread(() -> OrderExcelUtil.getOrderStore().preload(), "OrderStore-Preload");
+        orderPreloadThread.setDaemon(true);
+        orderPreloadThread.start();
 
         rootLayout = new BorderPane();
         rootLayout.setTop(globalStatusManager.getStatusBarNode());
@@ -79,6 +93,13 @@ public class AppLauncher extends Application {
             if (globalStatusManager != null) {
                 globalStatusManager.stopAllMonitoring();
             }
+            MenuFileWatcher.stop();
+            OrderPersistenceService.shutdown();
+            StockLedger.shutdown();
+            MenuRepository.compact();
+            OrderRepository.stopBackgroundCompaction();
+            OrderExcelUtil.stopScheduledExport();
+            OrderExcelUtil.closeOrderStore();
             Platform.exit();
             System.exit(0);
         });
@@ -95,6 +116,13 @@ public class AppLauncher extends Application {
         if (globalStatusManager != null) {
             globalStatusManager.stopAllMonitoring();
         }
+        MenuFileWatcher.stop();
+        OrderPersistenceService.shutdown();
+        StockLedger.shutdown();
+        MenuRepository.compact();
+        OrderRepository.stopBackgroundCompaction();
+        OrderExcelUtil.stopScheduledExport();
+        OrderExcelUtil.closeOrderStore();
         super.stop();
         System.out.println("Application stopped.");
     }
@@ -1,6 +1,11 @@
 package com.ssicecreamsshop;
 
 import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuCategory;
+import com.ssicecreamsshop.model.MenuChange;
+import com.ssicecreamsshop.model.MenuSnapshot;
+import com.ssicecreamsshop.utils.MenuRepository;
+import com.ssicecreamsshop.utils.MenuThumbnails;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -18,16 +23,9 @@ import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.BufferedReader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -35,7 +33,7 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 public class ManageInventoryView {
 
@@ -156,7 +154,16 @@ public class ManageInventoryView {
 
         loadInventoryData();
 
-        stage.showAndWait();
+        // Only the category list is shown here, so item-only changes need no redraw.
+        Consumer<MenuChange> menuListener = change -> {
+            if (change.hasCategoryChanges()) showCategories(change.getSnapshot());
+        };
+        MenuRepository.addListener(menuListener);
+        try {
+            stage.showAndWait();
+        } finally {
+            MenuRepository.removeListener(menuListener);
+        }
     }
 
     private static void handleAddItem() {
@@ -189,6 +196,7 @@ public class ManageInventoryView {
                 if (!Files.exists(targetImageDir)) Files.createDirectories(targetImageDir);
                 Path targetPath = targetImageDir.resolve(selectedImageFile.getName());
                 Files.copy(selectedImageFile.toPath(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+                MenuThumbnails.generateInBackground(selectedImageFile.getName());
                 imageFileName = selectedImageFile.getName(); // Set the filename
             } catch (IOException e) {
                 showAlert(Alert.AlertType.ERROR, "File Error", "Could not copy image file: " + e.getMessage());
@@ -196,7 +204,7 @@ public class ManageInventoryView {
             }
         }
 
-        addItemToJson(category, itemName, price, imageFileName, quantity);
+        if (!addItemToJson(category, itemName, price, imageFileName, quantity)) return;
 
         // Reset form fields
         itemNameField.clear();
@@ -209,76 +217,32 @@ public class ManageInventoryView {
         showAlert(Alert.AlertType.INFORMATION, "Success", "Item '" + itemName + "' added to menu!");
     }
 
-    private static void addItemToJson(String categoryName, String itemName, int price, String imageName, Integer quantity) {
-        String menuJsonPathStr = ConfigManager.getMenuItemsJsonPath();
-        File menuFile = new File(menuJsonPathStr);
-        JSONObject rootJson;
+    private static boolean addItemToJson(String categoryName, String itemName, int price, String imageName, Integer quantity) {
         try {
-            if (menuFile.getParentFile() != null && !menuFile.getParentFile().exists()) menuFile.getParentFile().mkdirs();
-            if (menuFile.exists() && menuFile.length() > 0) rootJson = new JSONObject(new String(Files.readAllBytes(menuFile.toPath()), StandardCharsets.UTF_8));
-            else { rootJson = new JSONObject(); rootJson.put("categories", new JSONArray()); }
-
-            JSONArray categoriesArray = rootJson.getJSONArray("categories");
-            JSONObject targetCategory = null;
-            for (int i = 0; i < categoriesArray.length(); i++) if (categoriesArray.getJSONObject(i).getString("name").equalsIgnoreCase(categoryName)) targetCategory = categoriesArray.getJSONObject(i);
-
-            if (targetCategory == null) { targetCategory = new JSONObject(); targetCategory.put("name", categoryName); targetCategory.put("items", new JSONArray()); categoriesArray.put(targetCategory); }
-
-            JSONArray itemsArray = targetCategory.getJSONArray("items");
-            for (int i = 0; i < itemsArray.length(); i++) {
-                if (itemsArray.getJSONObject(i).getString("name").equalsIgnoreCase(itemName)) {
-                    showAlert(Alert.AlertType.ERROR, "Item Exists", "An item with this name already exists. Please use the 'Update Stock' view to change quantity.");
-                    return;
-                }
+            if (!MenuRepository.addItem(categoryName, itemName, price, imageName, quantity)) {
+                showAlert(Alert.AlertType.ERROR, "Item Exists", "An item with this name already exists. Please use the 'Update Stock' view to change quantity.");
+                return false;
             }
-
-            JSONObject newItem = new JSONObject();
-            newItem.put("name", itemName);
-            newItem.put("imageName", imageName); // Will be an empty string if no image was selected
-            newItem.put("price", price);
-            if (quantity != null) {
-                newItem.put("quantity", quantity.intValue());
-            }
-            itemsArray.put(newItem);
-
-            try (FileWriter writer = new FileWriter(menuFile)) { writer.write(rootJson.toString(4)); }
-
-            NewOrderView.loadMenuItemsFromJson();
-            NewOrderView.refreshMenuView();
-            loadInventoryData();
-
-        } catch (IOException | JSONException e) {
+            return true;
+        } catch (IOException e) {
             e.printStackTrace();
             showAlert(Alert.AlertType.ERROR, "File Error", "Could not read/write to menu file: " + e.getMessage());
+            return false;
         }
     }
 
     public static void loadInventoryData() {
-        categoriesList.clear();
-        Path menuItemsPathObj = Paths.get(ConfigManager.getMenuItemsJsonPath());
-        if (!Files.exists(menuItemsPathObj)) return;
-
-        try (java.io.InputStream inputStream = Files.newInputStream(menuItemsPathObj)) {
-            String jsonText = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines().collect(Collectors.joining("\n"));
-            JSONObject jsonObject = new JSONObject(jsonText);
-            JSONArray categoriesArray = jsonObject.optJSONArray("categories");
-            if (categoriesArray == null) return;
-
-            List<String> tempCategories = new ArrayList<>();
-            for (int i = 0; i < categoriesArray.length(); i++) {
-                JSONObject categoryObj = categoriesArray.getJSONObject(i);
-                String categoryName = categoryObj.getString("name");
-                if (!tempCategories.contains(categoryName)) {
-                    tempCategories.add(categoryName);
-                }
-            }
-            tempCategories.sort(String.CASE_INSENSITIVE_ORDER);
-            categoriesList.setAll(tempCategories);
+        showCategories(MenuRepository.getSnapshot());
+    }
 
-        } catch (IOException | JSONException e) {
-            e.printStackTrace();
-            showAlert(Alert.AlertType.WARNING, "Load Error", "Could not load categories from file.");
+    private static void showCategories(MenuSnapshot menu) {
+        // Category names in a snapshot are already unique.
+        List<String> tempCategories = new ArrayList<>();
+        for (MenuCategory category : menu.getCategories()) {
+            tempCategories.add(category.getName());
         }
+        tempCategories.sort(String.CASE_INSENSITIVE_ORDER);
+        categoriesList.setAll(tempCategories);
     }
 
 
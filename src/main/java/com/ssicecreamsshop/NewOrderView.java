@@ -1,38 +1,39 @@
 package com.ssicecreamsshop;
 
-import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuCategory;
+import com.ssicecreamsshop.model.MenuChange;
+import com.ssicecreamsshop.model.MenuItem;
+import com.ssicecreamsshop.model.MenuSnapshot;
 import com.ssicecreamsshop.model.Order;
 import com.ssicecreamsshop.model.OrderItem;
-import com.ssicecreamsshop.utils.OrderExcelUtil;
+import com.ssicecreamsshop.utils.MenuImageCache;
+import com.ssicecreamsshop.utils.MenuRepository;
+import com.ssicecreamsshop.utils.MenuSearchIndex;
+import com.ssicecreamsshop.utils.OrderPersistenceService;
+import com.ssicecreamsshop.utils.StockLedger;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import javafx.util.Duration;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 public class NewOrderView {
 
@@ -59,73 +60,78 @@ public class NewOrderView {
     private static final String BUTTON_ACTION_RED = "#F44336";
     private static final String BUTTON_ACTION_RED_HOVER = "#D32F2F";
 
-    private static class MenuItem {
-        String name;
-        String imageName;
-        int price;
-        Integer quantity;
-
-        MenuItem(String name, String imageName, int price, Integer quantity) {
-            this.name = name;
-            this.imageName = imageName;
-            this.price = price;
-            this.quantity = quantity;
-        }
-        public String getName() { return name; }
-        public String getImageName() { return imageName; }
-        public int getPrice() { return price; }
-        public Integer getQuantity() { return quantity; }
-        public boolean hasLimitedStock() { return quantity != null; }
-    }
+    private static final double SEARCH_DEBOUNCE_MILLIS = 150;
 
     private static VBox cartBox;
     private static Label totalLabel;
     private static VBox menuVBox;
     private static TextField searchField;
-    private static Map<String, Integer> cartItems = new HashMap<>();
+    // Insertion order, so lines stay where they are in the cart as quantities change.
+    private static Map<String, Integer> cartItems = new LinkedHashMap<>();
+    private static final Map<String, CartLine> cartLines = new HashMap<>();
+    private static Label emptyCartLabel;
 
     private static final Map<String, List<MenuItem>> categorizedMenuItems = new LinkedHashMap<>();
     private static final Map<String, MenuItem> allMenuItems = new HashMap<>();
+    private static MenuSearchIndex searchIndex = new MenuSearchIndex(MenuSnapshot.EMPTY);
     private static List<TitledPane> categoryPanesList = new ArrayList<>();
+    // Category panes by category name, kept while the category is on the menu so filtering and menu changes reuse their cards.
+    private static final Map<String, CategorySection> categorySections = new HashMap<>();
+    private static Label noMenuLabel;
+    private static Label noResultsLabel;
 
     static {
-        loadMenuItemsFromJson();
+        try {
+            MenuRepository.ensureLoaded();
+        } catch (IOException e) {
+            showErrorDialog("Menu Configuration Error", "Error loading menu: " + e.getMessage());
+        }
+        indexMenu(MenuRepository.getSnapshot());
+        MenuRepository.addListener(NewOrderView::applyMenuChange);
     }
 
-    public static void loadMenuItemsFromJson() {
-        String menuJsonPathString = ConfigManager.getMenuItemsJsonPath();
-        Path menuJsonPath = Paths.get(menuJsonPathString);
-        categorizedMenuItems.clear();
-        allMenuItems.clear();
-        if (!Files.exists(menuJsonPath)) {
-            showErrorDialog("Menu Configuration Error", "Menu file not found.");
+    /**
+     * Updates the item lookups and, if the menu is on screen, redraws the cards of the items that were added,
+     * removed or changed. The whole menu is only redrawn when categories appear, disappear or move.
+     */
+    private static void applyMenuChange(MenuChange change) {
+        indexMenu(change.getSnapshot());
+        if (menuVBox == null || searchField == null) return;
+        if (change.hasCategoryChanges()) {
+            refreshMenuView();
             return;
         }
-        try (InputStream inputStream = Files.newInputStream(menuJsonPath)) {
-            String jsonText = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines().collect(Collectors.joining("\n"));
-            JSONObject jsonObject = new JSONObject(jsonText);
-            JSONArray categoriesArray = jsonObject.optJSONArray("categories");
-            if (categoriesArray == null) return;
-
-            for (int i = 0; i < categoriesArray.length(); i++) {
-                JSONObject categoryObj = categoriesArray.getJSONObject(i);
-                String categoryName = categoryObj.getString("name");
-                JSONArray itemsArray = categoryObj.getJSONArray("items");
-                List<MenuItem> itemList = new ArrayList<>();
-                for (int j = 0; j < itemsArray.length(); j++) {
-                    JSONObject itemObj = itemsArray.getJSONObject(j);
-                    Integer quantity = itemObj.has("quantity") ? itemObj.getInt("quantity") : null;
-                    MenuItem menuItem = new MenuItem(itemObj.getString("name"), itemObj.getString("imageName"), itemObj.getInt("price"), quantity);
-                    itemList.add(menuItem);
-                    allMenuItems.put(menuItem.getName(), menuItem);
-                }
-                if (!itemList.isEmpty()) categorizedMenuItems.put(categoryName, itemList);
+        for (String categoryName : change.getAffectedCategoryNames()) {
+            if (!updateCategorySection(categoryName)) {
+                refreshMenuView();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the item lookups from a menu snapshot.
+     */
+    private static void indexMenu(MenuSnapshot menu) {
+        categorizedMenuItems.clear();
+        allMenuItems.clear();
+        for (MenuCategory category : menu.getCategories()) {
+            if (category.getItems().isEmpty()) continue;
+            categorizedMenuItems.put(category.getName(), category.getItems());
+            for (MenuItem menuItem : category.getItems()) {
+                allMenuItems.put(menuItem.getName(), menuItem);
             }
-        } catch (Exception e) {
+        }
+        searchIndex = searchIndex.forMenu(menu);
+    }
+
+    private static void reloadMenu() {
+        try {
+            MenuRepository.reload();
+        } catch (IOException e) {
             e.printStackTrace();
             showErrorDialog("Menu Load Error", "Error loading menu: " + e.getMessage());
         }
-        if (menuVBox != null) refreshMenuView();
     }
 
     private static void showErrorDialog(String title, String content) {
@@ -165,7 +171,7 @@ public class NewOrderView {
 
         Button refreshMenuBtn = new Button("🔄 Refresh");
         styleControlButton(refreshMenuBtn, PRIMARY_NAVY, PRIMARY_NAVY_DARK);
-        refreshMenuBtn.setOnAction(e -> loadMenuItemsFromJson());
+        refreshMenuBtn.setOnAction(e -> reloadMenu());
 
         HBox controlButtons = new HBox(10, viewOrdersButton, expandAllBtn, collapseAllBtn, refreshMenuBtn);
         controlButtons.setAlignment(Pos.CENTER_LEFT);
@@ -184,7 +190,10 @@ public class NewOrderView {
         searchField.setStyle("-fx-font-size: 14px; -fx-padding: 10px 15px; -fx-background-radius: 25px; -fx-border-radius: 25px; -fx-border-color: " + BORDER_COLOR_LIGHT + "; -fx-background-color: white;");
         searchField.setEffect(new DropShadow(3, Color.web(SHADOW_COLOR)));
         searchField.setMaxWidth(Double.MAX_VALUE);
-        searchField.textProperty().addListener((obs, oldVal, newVal) -> populateMenu(newVal));
+        // Search once typing pauses rather than on every keystroke.
+        PauseTransition searchDebounce = new PauseTransition(Duration.millis(SEARCH_DEBOUNCE_MILLIS));
+        searchDebounce.setOnFinished(e -> populateMenu(searchField.getText()));
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> searchDebounce.playFromStart());
 
         menuVBox = new VBox(18);
         menuVBox.setPadding(new Insets(20));
@@ -258,59 +267,87 @@ public class NewOrderView {
         updateMenuDisplay(filter);
     }
 
+    /**
+     * Shows the categories and items matching the filter. Category panes and item cards are kept between
+     * calls, so a new filter only hides, shows and reorders existing nodes; a card is only built for an item
+     * that is new or whose details changed.
+     */
     private static void updateMenuDisplay(String filter) {
         if (menuVBox == null || searchField == null) return;
 
-        menuVBox.getChildren().clear();
-        menuVBox.getChildren().add(searchField);
+        List<Node> children = new ArrayList<>();
+        children.add(searchField);
         categoryPanesList.clear();
+        categorySections.keySet().retainAll(categorizedMenuItems.keySet());
 
         if (categorizedMenuItems.isEmpty()) {
-            Label infoLabel = new Label("🍦 No menu items loaded or available.\nCheck configuration or add items via Manage Inventory.");
-            infoLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: " + TEXT_ON_LIGHT_SECONDARY + "; -fx-padding: 20px; -fx-alignment: center;");
-            infoLabel.setWrapText(true);
-            menuVBox.getChildren().add(infoLabel);
+            if (noMenuLabel == null) {
+                noMenuLabel = new Label("🍦 No menu items loaded or available.\nCheck configuration or add items via Manage Inventory.");
+                noMenuLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: " + TEXT_ON_LIGHT_SECONDARY + "; -fx-padding: 20px; -fx-alignment: center;");
+                noMenuLabel.setWrapText(true);
+            }
+            children.add(noMenuLabel);
+            setMenuChildren(children);
             return;
         }
 
         String lowerCaseFilter = (filter == null) ? "" : filter.toLowerCase().trim();
+        Map<String, List<MenuItem>> matchesByCategory = searchByCategory(lowerCaseFilter);
 
         for (Map.Entry<String, List<MenuItem>> categoryEntry : categorizedMenuItems.entrySet()) {
             String categoryName = categoryEntry.getKey();
-            List<MenuItem> filteredItems = categoryEntry.getValue().stream()
-                    .filter(item -> (lowerCaseFilter.isEmpty() || item.getName().toLowerCase().contains(lowerCaseFilter) || String.valueOf(item.getPrice()).contains(lowerCaseFilter)))
-                    .collect(Collectors.toList());
+            List<MenuItem> filteredItems = matchesByCategory.getOrDefault(categoryName, List.of());
 
             if (filteredItems.isEmpty() && !lowerCaseFilter.isEmpty()) continue;
 
-            FlowPane itemsPane = new FlowPane(18, 18);
-            itemsPane.setPadding(new Insets(15));
-            itemsPane.setAlignment(Pos.TOP_LEFT);
-            for (MenuItem item : filteredItems) {
-                itemsPane.getChildren().add(createFlavorCard(item));
-            }
-
-            if (!itemsPane.getChildren().isEmpty() || lowerCaseFilter.isEmpty()) {
-                TitledPane categoryPane = new TitledPane(categoryName + " (" + filteredItems.size() + ")", itemsPane);
-                categoryPane.setAnimated(true);
-                categoryPane.setExpanded(true);
-                categoryPane.setStyle(
-                        "-fx-font-size: 17px; -fx-font-weight: bold; -fx-text-fill: " + PRIMARY_NAVY_DARK + ";" +
-                                "-fx-base: " + PRIMARY_NAVY_LIGHT + ";" +
-                                "-fx-body-color: " + BACKGROUND_CONTENT + ";" +
-                                "-fx-border-color: " + BORDER_COLOR_LIGHT + "; -fx-border-width: 1px; " +
-                                "-fx-border-radius: 8px; -fx-background-radius: 8px;"
-                );
-                categoryPane.setEffect(new DropShadow(2, Color.web(SHADOW_COLOR)));
-                menuVBox.getChildren().add(categoryPane);
-                categoryPanesList.add(categoryPane);
+            CategorySection section = categorySections.computeIfAbsent(categoryName, CategorySection::new);
+            section.setItems(categoryEntry.getValue());
+            section.showOnly(lowerCaseFilter.isEmpty() ? null : filteredItems);
+            children.add(section.pane);
+            categoryPanesList.add(section.pane);
+        }
+        if (children.size() == 1 && !lowerCaseFilter.isEmpty()) {
+            if (noResultsLabel == null) {
+                noResultsLabel = new Label();
+                noResultsLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: " + TEXT_ON_LIGHT_SECONDARY + "; -fx-padding: 10px;");
             }
+            noResultsLabel.setText("😢 No items match your search: '" + filter + "'");
+            children.add(noResultsLabel);
         }
-        if (menuVBox.getChildren().size() == 1 && !lowerCaseFilter.isEmpty()) {
-            Label noResultsLabel = new Label("😢 No items match your search: '" + filter + "'");
-            noResultsLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: " + TEXT_ON_LIGHT_SECONDARY + "; -fx-padding: 10px;");
-            menuVBox.getChildren().add(noResultsLabel);
+        setMenuChildren(children);
+    }
+
+    private static void setMenuChildren(List<Node> children) {
+        // Re-adding the same panes would still detach and restyle each of them.
+        if (!menuVBox.getChildren().equals(children)) menuVBox.getChildren().setAll(children);
+    }
+
+    /**
+     * Updates one category pane after its items changed, keeping the cards of unchanged items.
+     * @return false if the pane would appear or disappear, which needs the whole menu redrawn.
+     */
+    private static boolean updateCategorySection(String categoryName) {
+        CategorySection section = categorySections.get(categoryName);
+        List<MenuItem> items = categorizedMenuItems.get(categoryName);
+        if (section == null || items == null || !menuVBox.getChildren().contains(section.pane)) return false;
+        String lowerCaseFilter = searchField.getText() == null ? "" : searchField.getText().toLowerCase().trim();
+        List<MenuItem> filteredItems = lowerCaseFilter.isEmpty() ? items : searchByCategory(lowerCaseFilter).getOrDefault(categoryName, List.of());
+        if (filteredItems.isEmpty() && !lowerCaseFilter.isEmpty()) return false;
+        section.setItems(items);
+        section.showOnly(lowerCaseFilter.isEmpty() ? null : filteredItems);
+        return true;
+    }
+
+    /**
+     * @return The items whose name or price contains the filter, grouped by category name in menu order.
+     */
+    private static Map<String, List<MenuItem>> searchByCategory(String lowerCaseFilter) {
+        if (lowerCaseFilter.isEmpty()) return categorizedMenuItems;
+        Map<String, List<MenuItem>> matchesByCategory = new HashMap<>();
+        for (MenuItem item : searchIndex.search(lowerCaseFilter)) {
+            matchesByCategory.computeIfAbsent(item.getCategory(), k -> new ArrayList<>()).add(item);
         }
+        return matchesByCategory;
     }
 
     private static void styleControlButton(Button button, String baseColor, String hoverColor) {
@@ -330,93 +367,41 @@ public class NewOrderView {
         button.setMinWidth(150);
     }
 
+    /**
+     * Brings the cart on screen in line with {@link #cartItems}. Each line keeps its row while it stays in the
+     * cart, so a quantity change only updates that row's labels and the total.
+     */
     private static void refreshCart() {
-        cartBox.getChildren().clear();
+        cartLines.keySet().retainAll(cartItems.keySet());
         if (cartItems.isEmpty()) {
-            Label emptyCartLabel = new Label("Your cart is empty... Add some treats! 😋");
-            emptyCartLabel.setStyle("-fx-font-size: 15px; -fx-text-fill: " + TEXT_ON_LIGHT_SECONDARY + "; -fx-font-weight: bold;");
-            emptyCartLabel.setPadding(new Insets(25));
-            cartBox.getChildren().add(emptyCartLabel);
+            if (emptyCartLabel == null) {
+                emptyCartLabel = new Label("Your cart is empty... Add some treats! 😋");
+                emptyCartLabel.setStyle("-fx-font-size: 15px; -fx-text-fill: " + TEXT_ON_LIGHT_SECONDARY + "; -fx-font-weight: bold;");
+                emptyCartLabel.setPadding(new Insets(25));
+            }
+            cartBox.getChildren().setAll(emptyCartLabel);
             cartBox.setAlignment(Pos.CENTER);
             totalLabel.setText("Total: ₹0.00");
             return;
         }
         cartBox.setAlignment(Pos.TOP_LEFT);
         double currentTotal = 0;
+        List<Node> rows = new ArrayList<>(cartItems.size());
         for (Map.Entry<String, Integer> entry : cartItems.entrySet()) {
             MenuItem item = allMenuItems.get(entry.getKey());
             if (item == null) continue;
-            double subtotal = entry.getValue() * item.getPrice();
-            currentTotal += subtotal;
-            cartBox.getChildren().add(createCartItemBox(item, entry.getValue(), subtotal));
+            CartLine line = cartLines.get(entry.getKey());
+            if (line == null || !line.item.getImageName().equals(item.getImageName())) {
+                line = new CartLine(item);
+                cartLines.put(entry.getKey(), line);
+            }
+            currentTotal += line.update(item, entry.getValue());
+            rows.add(line.row);
         }
+        if (!cartBox.getChildren().equals(rows)) cartBox.getChildren().setAll(rows);
         totalLabel.setText(String.format("Total: ₹%.2f", currentTotal));
     }
 
-    private static HBox createCartItemBox(MenuItem item, int quantity, double subtotal) {
-        ImageView imgView = new ImageView();
-        String imageBasePath = ConfigManager.getImagePath();
-        Path imageFilePath = Paths.get(imageBasePath, item.getImageName());
-        try {
-            if (Files.exists(imageFilePath) && !Files.isDirectory(imageFilePath)) {
-                try (InputStream imageStream = Files.newInputStream(imageFilePath)) {
-                    Image img = new Image(imageStream);
-                    if (img.isError()) imgView.setImage(null); else imgView.setImage(img);
-                }
-            } else imgView.setImage(null);
-        } catch (IOException e) { imgView.setImage(null); }
-        imgView.setFitWidth(60);
-        imgView.setFitHeight(60);
-        imgView.setPreserveRatio(true);
-        if (imgView.getImage() != null) {
-            javafx.scene.shape.Rectangle clip = new javafx.scene.shape.Rectangle(imgView.getFitWidth(), imgView.getFitHeight());
-            clip.setArcWidth(10); clip.setArcHeight(10);
-            imgView.setClip(clip);
-        }
-
-        Label nameLabel = new Label(item.getName());
-        nameLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: " + PRIMARY_NAVY_DARK + ";");
-        Label priceInfoLabel = new Label(String.format("₹%d x %d", item.getPrice(), quantity));
-        priceInfoLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: " + TEXT_ON_LIGHT_SECONDARY + ";");
-        Label subtotalLabelText = new Label(String.format("Sub: ₹%.2f", subtotal));
-        subtotalLabelText.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: " + ACCENT_BLUE + ";");
-
-        Button plusButton = new Button("➕");
-        styleCartControlButton(plusButton);
-        plusButton.setOnAction(e -> { addToCart(item.getName()); });
-
-        Label quantityLabel = new Label(String.valueOf(quantity));
-        quantityLabel.setStyle("-fx-font-size: 16px; -fx-padding: 0 10px; -fx-font-weight: bold; -fx-text-fill: " + TEXT_ON_LIGHT_PRIMARY + ";");
-
-        Button minusButton = new Button("➖");
-        styleCartControlButton(minusButton);
-        minusButton.setOnAction(e -> {
-            if (cartItems.get(item.getName()) > 1) cartItems.put(item.getName(), cartItems.get(item.getName()) - 1);
-            else cartItems.remove(item.getName());
-            refreshCart();
-        });
-
-        HBox quantityControls = new HBox(10, minusButton, quantityLabel, plusButton);
-        quantityControls.setAlignment(Pos.CENTER_LEFT);
-
-        VBox itemDetails = new VBox(6, nameLabel, priceInfoLabel, quantityControls);
-        itemDetails.setAlignment(Pos.CENTER_LEFT);
-        HBox.setHgrow(itemDetails, Priority.ALWAYS);
-
-        VBox subtotalAndRemove = new VBox(5, subtotalLabelText);
-        subtotalAndRemove.setAlignment(Pos.CENTER_RIGHT);
-
-        Node imageNodeCart = imgView.getImage() != null ? imgView : createPlaceholderGraphic(item.getName(), 60);
-
-        HBox cartItemBox = new HBox(15, imageNodeCart, itemDetails, subtotalAndRemove);
-        cartItemBox.setPadding(new Insets(12));
-        cartItemBox.setStyle("-fx-background-color: " + BACKGROUND_CONTENT + "; -fx-background-radius: 10px; -fx-border-color: " + BORDER_COLOR_LIGHT + "; -fx-border-width: 1px; -fx-border-radius: 10px;");
-        cartItemBox.setEffect(new DropShadow(3, Color.web(SHADOW_COLOR)));
-        cartItemBox.setAlignment(Pos.CENTER_LEFT);
-
-        return cartItemBox;
-    }
-
     private static void styleCartControlButton(Button button) {
         String baseCartBtnStyle = "-fx-font-size: 18px; -fx-padding: 6 12; -fx-background-radius: 50px; -fx-text-fill: " + TEXT_ON_LIGHT_PRIMARY + "; -fx-font-weight: bold;";
         button.setStyle(baseCartBtnStyle + "-fx-background-color: " + ACCENT_YELLOW + ";");
@@ -434,23 +419,6 @@ public class NewOrderView {
     }
 
     private static VBox createFlavorCard(MenuItem item) {
-        ImageView imgView = new ImageView();
-        String imageBasePath = ConfigManager.getImagePath();
-        Path imageFilePath = Paths.get(imageBasePath, item.getImageName());
-        try {
-            if (Files.exists(imageFilePath) && !Files.isDirectory(imageFilePath)) {
-                try (InputStream imageStream = Files.newInputStream(imageFilePath)) {
-                    imgView.setImage(new Image(imageStream));
-                }
-            }
-        } catch (Exception e) { imgView.setImage(null); }
-        imgView.setFitWidth(110); imgView.setFitHeight(110); imgView.setPreserveRatio(true);
-        if (imgView.getImage() != null) {
-            javafx.scene.shape.Rectangle clip = new javafx.scene.shape.Rectangle(imgView.getFitWidth(), imgView.getFitHeight());
-            clip.setArcWidth(15); clip.setArcHeight(15);
-            imgView.setClip(clip);
-        }
-
         Label nameLabel = new Label(item.getName());
         nameLabel.setStyle("-fx-font-size: 15px; -fx-font-weight: bold; -fx-text-fill: " + TEXT_ON_LIGHT_PRIMARY + ";");
         Label priceLabel = new Label("₹" + item.getPrice());
@@ -472,7 +440,7 @@ public class NewOrderView {
             stockLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: #4CAF50;");
         }
 
-        Node imageNode = imgView.getImage() != null ? imgView : createPlaceholderGraphic(item.getName(), 110);
+        Node imageNode = MenuImageCache.createImageNode(item.getImageName(), 110, 15, createPlaceholderGraphic(item.getName(), 110));
 
         VBox card = new VBox(10, imageNode, nameLabel, priceLabel, stockLabel);
         card.setAlignment(Pos.CENTER);
@@ -488,16 +456,9 @@ public class NewOrderView {
             card.setOnMouseClicked(event -> {
                 if (event.getButton().equals(MouseButton.PRIMARY) && event.getClickCount() == 3) {
                     System.out.println("Triple-click detected on out-of-stock item: " + item.getName());
-                    String itemCategory = findCategoryOfItem(item.getName());
-                    if (itemCategory != null) {
-                        boolean success = UpdateInventoryView.setItemStockToUnlimited(item.getName(), itemCategory);
-                        if (success) {
-                            Platform.runLater(() -> {
-                                showAlert(Alert.AlertType.INFORMATION, "Stock Updated", item.getName() + " is now set to Unlimited stock.");
-                                loadMenuItemsFromJson();
-                                refreshMenuView();
-                            });
-                        }
+                    boolean success = UpdateInventoryView.setItemStockToUnlimited(item.getName(), item.getCategory());
+                    if (success) {
+                        showAlert(Alert.AlertType.INFORMATION, "Stock Updated", item.getName() + " is now set to Unlimited stock.");
                     }
                 }
             });
@@ -549,76 +510,53 @@ public class NewOrderView {
             showAlert(Alert.AlertType.WARNING, "Empty Cart", "Your cart is empty.");
             return;
         }
-        for (Map.Entry<String, Integer> cartEntry : cartItems.entrySet()) {
-            MenuItem item = allMenuItems.get(cartEntry.getKey());
-            if (item != null && item.hasLimitedStock()) {
-                if (cartEntry.getValue() > item.getQuantity()) {
-                    showAlert(Alert.AlertType.ERROR, "Stock Issue", "Not enough stock for " + item.getName() + ". Required: " + cartEntry.getValue() + ", Available: " + item.getQuantity());
-                    return;
-                }
-            }
-        }
 
         List<OrderItem> currentOrderItems = new ArrayList<>();
+        Map<String, Integer> stockDeductions = new HashMap<>();
         for (Map.Entry<String, Integer> cartEntry : cartItems.entrySet()) {
             MenuItem menuItemDetails = allMenuItems.get(cartEntry.getKey());
-            if (menuItemDetails != null) currentOrderItems.add(new OrderItem(menuItemDetails.getName(), cartEntry.getValue(), menuItemDetails.getPrice()));
+            if (menuItemDetails == null) continue;
+            currentOrderItems.add(new OrderItem(menuItemDetails.getName(), cartEntry.getValue(), menuItemDetails.getPrice()));
+            if (menuItemDetails.hasLimitedStock()) {
+                stockDeductions.put(menuItemDetails.getName(), cartEntry.getValue());
+            }
         }
-        Order newOrder = new Order(currentOrderItems);
-
-        if (!updateStockQuantities()) {
-            showAlert(Alert.AlertType.ERROR, "Critical Error", "Could not update stock levels. Order has been cancelled.");
+        // Reserving checks and takes the stock in one step, so two tills can never sell the same last item.
+        StockLedger.Reservation reservation;
+        try {
+            reservation = StockLedger.reserve(stockDeductions);
+        } catch (StockLedger.OutOfStockException e) {
+            showAlert(Alert.AlertType.ERROR, "Stock Issue", e.getMessage());
             return;
         }
-        OrderExcelUtil.saveOrderToExcel(newOrder);
-        showAlert(Alert.AlertType.INFORMATION, "Order Placed", "Order placed successfully!");
+        Order newOrder = new Order(currentOrderItems);
+        // The cart is emptied straight away so the next order can be taken while this one is saved.
+        Map<String, Integer> orderedItems = new LinkedHashMap<>(cartItems);
         cartItems.clear();
         refreshCart();
-        loadMenuItemsFromJson();
-        refreshMenuView();
-    }
 
-    private static boolean updateStockQuantities() {
-        Path menuItemsPath = Paths.get(ConfigManager.getMenuItemsJsonPath());
-        File menuFile = menuItemsPath.toFile();
-        if (!menuFile.exists()) return false;
-        try {
-            String content = new String(Files.readAllBytes(menuItemsPath), StandardCharsets.UTF_8);
-            JSONObject rootJson = new JSONObject(content);
-            JSONArray categoriesArray = rootJson.getJSONArray("categories");
-            for (Map.Entry<String, Integer> cartEntry : cartItems.entrySet()) {
-                MenuItem menuItem = allMenuItems.get(cartEntry.getKey());
-                if (menuItem != null && menuItem.hasLimitedStock()) {
-                    boolean found = false;
-                    for (int i = 0; i < categoriesArray.length(); i++) {
-                        JSONArray itemsArray = categoriesArray.getJSONObject(i).getJSONArray("items");
-                        for (int j = 0; j < itemsArray.length(); j++) {
-                            JSONObject itemObj = itemsArray.getJSONObject(j);
-                            if (itemObj.getString("name").equalsIgnoreCase(menuItem.getName())) {
-                                int currentStock = itemObj.optInt("quantity");
-                                itemObj.put("quantity", currentStock - cartEntry.getValue());
-                                found = true;
-                                break;
-                            }
-                        }
-                        if (found) break;
-                    }
-                }
+        // The order is written by the persistence service's writer thread, which then commits the reservation.
+        OrderPersistenceService.submit(newOrder, reservation).whenComplete((savedOrder, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                restoreCartLines(orderedItems);
+                showAlert(Alert.AlertType.ERROR, "Order Save Error", "Order " + newOrder.getOrderId() + " could not be saved: " + error.getMessage()
+                        + "\nIts items are back in the cart so it can be placed again.");
+                return;
             }
-            try (FileWriter writer = new FileWriter(menuFile)) { writer.write(rootJson.toString(4)); }
-            return true;
-        } catch (IOException | JSONException e) { e.printStackTrace(); return false; }
+            showAlert(Alert.AlertType.INFORMATION, "Order Placed", "Order placed successfully!");
+        }));
     }
 
-    private static String findCategoryOfItem(String itemName) {
-        for (Map.Entry<String, List<MenuItem>> entry : categorizedMenuItems.entrySet()) {
-            for (MenuItem item : entry.getValue()) {
-                if (item.getName().equals(itemName)) {
-                    return entry.getKey();
-                }
-            }
-        }
-        return null;
+    /**
+     * Puts the lines of an order that could not be saved back at the top of the cart, adding to any
+     * quantities of the same items taken for the next order in the meantime.
+     */
+    private static void restoreCartLines(Map<String, Integer> orderLines) {
+        Map<String, Integer> restored = new LinkedHashMap<>(orderLines);
+        cartItems.forEach((itemName, quantity) -> restored.merge(itemName, quantity, Integer::sum));
+        cartItems.clear();
+        cartItems.putAll(restored);
+        refreshCart();
     }
 
     private static void showAlert(Alert.AlertType alertType, String title, String message) {
@@ -642,5 +580,137 @@ public class NewOrderView {
         });
     }
 
+    /**
+     * One category pane of the menu with a card for each of its items, in menu order, kept for as long as the
+     * category is on the menu. Cards are keyed by the item they show, so a changed item gets a new card.
+     */
+    private static final class CategorySection {
+        private final String name;
+        private final TitledPane pane;
+        private final FlowPane itemsPane;
+        private List<MenuItem> items = List.of();
+        private Map<MenuItem, Node> cardsByItem = new HashMap<>();
+
+        CategorySection(String name) {
+            this.name = name;
+            itemsPane = new FlowPane(18, 18);
+            itemsPane.setPadding(new Insets(15));
+            itemsPane.setAlignment(Pos.TOP_LEFT);
+            pane = new TitledPane(name, itemsPane);
+            pane.setAnimated(true);
+            pane.setExpanded(true);
+            pane.setStyle(
+                    "-fx-font-size: 17px; -fx-font-weight: bold; -fx-text-fill: " + PRIMARY_NAVY_DARK + ";" +
+                            "-fx-base: " + PRIMARY_NAVY_LIGHT + ";" +
+                            "-fx-body-color: " + BACKGROUND_CONTENT + ";" +
+                            "-fx-border-color: " + BORDER_COLOR_LIGHT + "; -fx-border-width: 1px; " +
+                            "-fx-border-radius: 8px; -fx-background-radius: 8px;"
+            );
+            pane.setEffect(new DropShadow(2, Color.web(SHADOW_COLOR)));
+        }
+
+        /**
+         * Sets the category's items, building cards only for items that are new or changed.
+         */
+        void setItems(List<MenuItem> newItems) {
+            if (newItems.equals(items)) return;
+            Map<MenuItem, Node> keptCards = new HashMap<>();
+            List<Node> cards = new ArrayList<>(newItems.size());
+            for (MenuItem item : newItems) {
+                Node card = cardsByItem.get(item);
+                if (card == null) card = createFlavorCard(item);
+                keptCards.put(item, card);
+                cards.add(card);
+            }
+            items = newItems;
+            cardsByItem = keptCards;
+            itemsPane.getChildren().setAll(cards);
+        }
+
+        /**
+         * Hides the cards of items not in the list.
+         * @param shownItems The items to show, or null to show all of them.
+         */
+        void showOnly(List<MenuItem> shownItems) {
+            Set<MenuItem> shown = shownItems == null ? null : new HashSet<>(shownItems);
+            for (MenuItem item : items) {
+                Node card = cardsByItem.get(item);
+                boolean visible = shown == null || shown.contains(item);
+                if (card.isVisible() != visible) {
+                    card.setVisible(visible);
+                    card.setManaged(visible);
+                }
+            }
+            pane.setText(name + " (" + (shown == null ? items.size() : shown.size()) + ")");
+        }
+    }
+
+    /**
+     * The row of one cart line. The row is built once; {@link #update} only changes the text of its labels.
+     */
+    private static final class CartLine {
+        private MenuItem item;
+        private final HBox row;
+        private final Label priceInfoLabel;
+        private final Label quantityLabel;
+        private final Label subtotalLabel;
+
+        CartLine(MenuItem item) {
+            this.item = item;
+            String itemName = item.getName();
+
+            Label nameLabel = new Label(itemName);
+            nameLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: " + PRIMARY_NAVY_DARK + ";");
+            priceInfoLabel = new Label();
+            priceInfoLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: " + TEXT_ON_LIGHT_SECONDARY + ";");
+            subtotalLabel = new Label();
+            subtotalLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: " + ACCENT_BLUE + ";");
+
+            Button plusButton = new Button("➕");
+            styleCartControlButton(plusButton);
+            plusButton.setOnAction(e -> { addToCart(itemName); });
+
+            quantityLabel = new Label();
+            quantityLabel.setStyle("-fx-font-size: 16px; -fx-padding: 0 10px; -fx-font-weight: bold; -fx-text-fill: " + TEXT_ON_LIGHT_PRIMARY + ";");
+
+            Button minusButton = new Button("➖");
+            styleCartControlButton(minusButton);
+            minusButton.setOnAction(e -> {
+                if (cartItems.get(itemName) > 1) cartItems.put(itemName, cartItems.get(itemName) - 1);
+                else cartItems.remove(itemName);
+                refreshCart();
+            });
+
+            HBox quantityControls = new HBox(10, minusButton, quantityLabel, plusButton);
+            quantityControls.setAlignment(Pos.CENTER_LEFT);
+
+            VBox itemDetails = new VBox(6, nameLabel, priceInfoLabel, quantityControls);
+            itemDetails.setAlignment(Pos.CENTER_LEFT);
+            HBox.setHgrow(itemDetails, Priority.ALWAYS);
 
+            VBox subtotalAndRemove = new VBox(5, subtotalLabel);
+            subtotalAndRemove.setAlignment(Pos.CENTER_RIGHT);
+
+            Node imageNodeCart = MenuImageCache.createImageNode(item.getImageName(), 60, 10, createPlaceholderGraphic(itemName, 60));
+
+            row = new HBox(15, imageNodeCart, itemDetails, subtotalAndRemove);
+            row.setPadding(new Insets(12));
+            row.setStyle("-fx-background-color: " + BACKGROUND_CONTENT + "; -fx-background-radius: 10px; -fx-border-color: " + BORDER_COLOR_LIGHT + "; -fx-border-width: 1px; -fx-border-radius: 10px;");
+            row.setEffect(new DropShadow(3, Color.web(SHADOW_COLOR)));
+            row.setAlignment(Pos.CENTER_LEFT);
+        }
+
+        /**
+         * Shows the line's current quantity and the item's current price. Labels whose text is unchanged are left alone.
+         * @return The line's subtotal.
+         */
+        double update(MenuItem item, int quantity) {
+            this.item = item;
+            double subtotal = quantity * item.getPrice();
+            priceInfoLabel.setText(String.format("₹%d x %d", item.getPrice(), quantity));
+            quantityLabel.setText(String.valueOf(quantity));
+            subtotalLabel.setText(String.format("Sub: ₹%.2f", subtotal));
+            return subtotal;
+        }
+    }
 }
@@ -1,8 +1,13 @@
 package com.ssicecreamsshop;
 
-import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuCategory;
+import com.ssicecreamsshop.model.MenuChange;
+import com.ssicecreamsshop.model.MenuItem;
+import com.ssicecreamsshop.model.MenuSnapshot;
+import com.ssicecreamsshop.utils.BulkImageImport;
 import com.ssicecreamsshop.utils.ExcelExportUtil;
 import com.ssicecreamsshop.utils.ExcelImportDialog;
+import com.ssicecreamsshop.utils.MenuRepository;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -20,24 +25,10 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.BufferedReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 public class UpdateInventoryView {
 
@@ -83,7 +74,14 @@ public class UpdateInventoryView {
 
         Button refreshButton = new Button("🔄 Refresh");
         styleControlButton(refreshButton, BUTTON_ACTION_BLUE, BUTTON_ACTION_BLUE_HOVER);
-        refreshButton.setOnAction(e -> loadInventoryData());
+        refreshButton.setOnAction(e -> {
+            try {
+                MenuRepository.reload();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                showAlert(Alert.AlertType.ERROR, "Error", "Could not reload the menu: " + ex.getMessage());
+            }
+        });
 
         Button exportButton = new Button("📤 Export to Excel");
         styleControlButton(exportButton, BUTTON_ACTION_GREEN, BUTTON_ACTION_GREEN_HOVER);
@@ -91,14 +89,15 @@ public class UpdateInventoryView {
 
         Button importButton = new Button("📥 Import from Excel");
         styleControlButton(importButton, BUTTON_ACTION_YELLOW, BUTTON_ACTION_YELLOW_HOVER, TEXT_ON_YELLOW);
-        importButton.setOnAction(e -> {
-            ExcelImportDialog.show();
-            loadInventoryData();
-        });
+        importButton.setOnAction(e -> ExcelImportDialog.show());
+
+        Button importImagesButton = new Button("🖼️ Import Images");
+        styleControlButton(importImagesButton, BUTTON_ACTION_YELLOW, BUTTON_ACTION_YELLOW_HOVER, TEXT_ON_YELLOW);
+        importImagesButton.setOnAction(e -> BulkImageImport.importImages(stage));
 
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
-        HBox topControls = new HBox(15, titleLabel, spacer, refreshButton, exportButton, importButton);
+        HBox topControls = new HBox(15, titleLabel, spacer, refreshButton, exportButton, importButton, importImagesButton);
         topControls.setAlignment(Pos.CENTER_LEFT);
         topControls.setPadding(new Insets(20, 25, 15, 25));
 
@@ -118,7 +117,14 @@ public class UpdateInventoryView {
         scene.setOnKeyPressed(event -> { if (event.getCode() == KeyCode.ESCAPE) stage.close(); });
         stage.setScene(scene);
         loadInventoryData();
-        stage.showAndWait();
+        // The table follows menu changes made anywhere while this window is open.
+        Consumer<MenuChange> menuListener = UpdateInventoryView::applyMenuChange;
+        MenuRepository.addListener(menuListener);
+        try {
+            stage.showAndWait();
+        } finally {
+            MenuRepository.removeListener(menuListener);
+        }
     }
 
     private static void setupTableColumns() {
@@ -154,121 +160,71 @@ public class UpdateInventoryView {
     }
 
     public static void loadInventoryData() {
+        showInventory(MenuRepository.getSnapshot());
+    }
+
+    private static void showInventory(MenuSnapshot menu) {
         inventoryList.clear();
-        Path menuItemsPathObj = Paths.get(ConfigManager.getMenuItemsJsonPath());
-        if (!Files.exists(menuItemsPathObj)) return;
-
-        try (InputStream inputStream = Files.newInputStream(menuItemsPathObj)) {
-            String jsonText = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines().collect(Collectors.joining("\n"));
-            JSONObject jsonObject = new JSONObject(jsonText);
-            JSONArray categoriesArray = jsonObject.optJSONArray("categories");
-            if(categoriesArray == null) return;
-
-            for (int i = 0; i < categoriesArray.length(); i++) {
-                JSONObject categoryObj = categoriesArray.getJSONObject(i);
-                String categoryName = categoryObj.getString("name");
-                JSONArray itemsArray = categoryObj.getJSONArray("items");
-                for (int j = 0; j < itemsArray.length(); j++) {
-                    JSONObject itemObj = itemsArray.getJSONObject(j);
-                    inventoryList.add(new InventoryItem(
-                            itemObj.getString("name"),
-                            categoryName,
-                            itemObj.has("quantity") ? String.valueOf(itemObj.getInt("quantity")) : "Unlimited"
-                    ));
-                }
+        for (MenuCategory category : menu.getCategories()) {
+            for (MenuItem item : category.getItems()) {
+                inventoryList.add(toInventoryItem(item));
             }
-        } catch (IOException | JSONException e) {
-            e.printStackTrace();
         }
     }
 
-    private static void updateItemQuantity(String itemName, String category, int newQuantity) {
-        Path menuItemsPath = Paths.get(ConfigManager.getMenuItemsJsonPath());
-        File menuFile = menuItemsPath.toFile();
-        if (!menuFile.exists()) return;
+    /**
+     * Updates only the rows of changed and removed items; added items need their place in the table, so they redraw it.
+     */
+    private static void applyMenuChange(MenuChange change) {
+        if (change.hasCategoryChanges() || !change.getAddedItems().isEmpty()) {
+            showInventory(change.getSnapshot());
+            return;
+        }
+        for (MenuItem item : change.getRemovedItems()) {
+            int row = findRow(item);
+            if (row >= 0) inventoryList.remove(row);
+        }
+        for (MenuItem item : change.getChangedItems()) {
+            int row = findRow(item);
+            if (row >= 0) inventoryList.set(row, toInventoryItem(item));
+        }
+    }
 
-        try {
-            String content = new String(Files.readAllBytes(menuItemsPath), StandardCharsets.UTF_8);
-            JSONObject rootJson = new JSONObject(content);
-            JSONArray categoriesArray = rootJson.getJSONArray("categories");
-            boolean updated = false;
-
-            for (int i = 0; i < categoriesArray.length(); i++) {
-                JSONObject categoryObj = categoriesArray.getJSONObject(i);
-                if (categoryObj.getString("name").equalsIgnoreCase(category)) {
-                    JSONArray itemsArray = categoryObj.getJSONArray("items");
-                    for (int j = 0; j < itemsArray.length(); j++) {
-                        JSONObject itemObj = itemsArray.getJSONObject(j);
-                        if (itemObj.getString("name").equalsIgnoreCase(itemName)) {
-                            itemObj.put("quantity", newQuantity);
-                            updated = true;
-                            break;
-                        }
-                    }
-                }
-                if(updated) break;
-            }
+    private static int findRow(MenuItem item) {
+        for (int i = 0; i < inventoryList.size(); i++) {
+            InventoryItem row = inventoryList.get(i);
+            if (row.getCategory().equalsIgnoreCase(item.getCategory()) && row.getName().equalsIgnoreCase(item.getName())) return i;
+        }
+        return -1;
+    }
 
-            if (updated) {
-                try (FileWriter writer = new FileWriter(menuFile)) {
-                    writer.write(rootJson.toString(4));
-                }
-                Platform.runLater(() -> {
-                    showAlert(Alert.AlertType.INFORMATION, "Success", "Stock for '" + itemName + "' updated to " + newQuantity + ".");
-                    loadInventoryData();
-                    NewOrderView.loadMenuItemsFromJson();
-                    NewOrderView.refreshMenuView();
-                });
-            }
+    private static InventoryItem toInventoryItem(MenuItem item) {
+        return new InventoryItem(item.getName(), item.getCategory(), item.hasLimitedStock() ? String.valueOf(item.getQuantity()) : "Unlimited");
+    }
 
-        } catch (IOException | JSONException e) {
+    private static void updateItemQuantity(String itemName, String category, int newQuantity) {
+        try {
+            if (MenuRepository.setQuantity(category, itemName, newQuantity)) {
+                showAlert(Alert.AlertType.INFORMATION, "Success", "Stock for '" + itemName + "' updated to " + newQuantity + ".");
+            }
+        } catch (IOException e) {
             e.printStackTrace();
-            Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Error", "Failed to update stock quantity."));
+            showAlert(Alert.AlertType.ERROR, "Error", "Failed to update stock quantity.");
         }
     }
 
     /**
-     * Finds an item in the JSON and removes its 'quantity' key, effectively making it unlimited.
+     * Makes an item's stock unlimited by removing its quantity.
      * @param itemName The name of the item to update.
      * @param category The category of the item.
-     * @return true if the item was found and updated, false otherwise.
+     * @return true if the item was found with a limited stock and updated, false otherwise.
      */
     public static boolean setItemStockToUnlimited(String itemName, String category) {
-        Path menuItemsPath = Paths.get(ConfigManager.getMenuItemsJsonPath());
-        File menuFile = menuItemsPath.toFile();
-        if (!menuFile.exists()) return false;
-
+        MenuItem item = MenuRepository.getSnapshot().findItem(category, itemName);
+        if (item == null || !item.hasLimitedStock()) return false;
         try {
-            String content = new String(Files.readAllBytes(menuItemsPath), StandardCharsets.UTF_8);
-            JSONObject rootJson = new JSONObject(content);
-            JSONArray categoriesArray = rootJson.getJSONArray("categories");
-            boolean updated = false;
-
-            for (int i = 0; i < categoriesArray.length(); i++) {
-                JSONObject categoryObj = categoriesArray.getJSONObject(i);
-                if (categoryObj.getString("name").equalsIgnoreCase(category)) {
-                    JSONArray itemsArray = categoryObj.getJSONArray("items");
-                    for (int j = 0; j < itemsArray.length(); j++) {
-                        JSONObject itemObj = itemsArray.getJSONObject(j);
-                        if (itemObj.getString("name").equalsIgnoreCase(itemName)) {
-                            if (itemObj.has("quantity")) {
-                                itemObj.remove("quantity");
-                                updated = true;
-                            }
-                            break;
-                        }
-                    }
-                }
-                if(updated) break;
-            }
-
-            if (updated) {
-                try (FileWriter writer = new FileWriter(menuFile)) {
-                    writer.write(rootJson.toString(4));
-                }
-            }
-            return updated;
-        } catch (IOException | JSONException e) {
+            return MenuRepository.setQuantity(category, itemName, null);
+        } catch (IOException e) {
             e.printStackTrace();
             return false;
         }
@@ -283,9 +239,6 @@ public class UpdateInventoryView {
         if (result.isPresent() && result.get() == ButtonType.OK) {
             if (removeItemFromJson(itemToDelete)) {
                 showAlert(Alert.AlertType.INFORMATION, "Success", "Item '" + itemToDelete.getName() + "' has been deleted.");
-                loadInventoryData();
-                NewOrderView.loadMenuItemsFromJson();
-                NewOrderView.refreshMenuView();
             } else {
                 showAlert(Alert.AlertType.ERROR, "Error", "Failed to delete the item from the menu file.");
             }
@@ -293,39 +246,9 @@ public class UpdateInventoryView {
     }
 
     private static boolean removeItemFromJson(InventoryItem itemToDelete) {
-        Path menuItemsPath = Paths.get(ConfigManager.getMenuItemsJsonPath());
-        File menuFile = menuItemsPath.toFile();
-        if (!menuFile.exists()) return false;
-
         try {
-            String content = new String(Files.readAllBytes(menuItemsPath), StandardCharsets.UTF_8);
-            JSONObject rootJson = new JSONObject(content);
-            JSONArray categoriesArray = rootJson.getJSONArray("categories");
-            boolean itemRemoved = false;
-
-            for (int i = 0; i < categoriesArray.length(); i++) {
-                JSONObject categoryObj = categoriesArray.getJSONObject(i);
-                if (categoryObj.getString("name").equalsIgnoreCase(itemToDelete.getCategory())) {
-                    JSONArray itemsArray = categoryObj.getJSONArray("items");
-                    JSONArray newItemsArray = new JSONArray();
-                    for (int j = 0; j < itemsArray.length(); j++) {
-                        if (!itemsArray.getJSONObject(j).getString("name").equalsIgnoreCase(itemToDelete.getName())) {
-                            newItemsArray.put(itemsArray.getJSONObject(j));
-                        } else {
-                            itemRemoved = true;
-                        }
-                    }
-                    categoryObj.put("items", newItemsArray);
-                }
-            }
-
-            if (itemRemoved) {
-                try (FileWriter writer = new FileWriter(menuFile)) {
-                    writer.write(rootJson.toString(4));
-                }
-            }
-            return itemRemoved;
-        } catch (IOException | JSONException e) {
+            return MenuRepository.removeItem(itemToDelete.getCategory(), itemToDelete.getName());
+        } catch (IOException e) {
             e.printStackTrace();
             return false;
         }
@@ -441,9 +364,6 @@ public class UpdateInventoryView {
                 InventoryItem item = getTableView().getItems().get(getIndex());
                 if (setItemStockToUnlimited(item.getName(), item.getCategory())) {
                     showAlert(Alert.AlertType.INFORMATION, "Success", "Stock for '" + item.getName() + "' is now unlimited.");
-                    loadInventoryData();
-                    NewOrderView.loadMenuItemsFromJson();
-                    NewOrderView.refreshMenuView();
                 } else {
                     showAlert(Alert.AlertType.ERROR, "Error", "Could not update item stock.");
                 }
@@ -3,6 +3,7 @@ package com.ssicecreamsshop;
 import com.ssicecreamsshop.model.Order;
 import com.ssicecreamsshop.model.OrderItem;
 import com.ssicecreamsshop.utils.OrderExcelUtil;
+import com.ssicecreamsshop.utils.OrderStore;
 import com.ssicecreamsshop.utils.ExcelExportUtil;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
@@ -29,6 +30,7 @@ import javafx.scene.text.Text;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -99,9 +101,13 @@ public class ViewOrdersView {
         styleTopBarButton(refreshButton, BUTTON_ACTION_BLUE, BUTTON_ACTION_BLUE_HOVER);
         refreshButton.setOnAction(e -> loadOrders());
 
+        Button exportButton = new Button("📤 Export Report");
+        styleTopBarButton(exportButton, BUTTON_ACTION_GREEN, BUTTON_ACTION_GREEN_HOVER);
+        exportButton.setOnAction(e -> ExcelExportUtil.exportOrdersToExcel(new ArrayList<>(ordersTable.getItems()), viewOrdersStage));
+
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
-        HBox topBar = new HBox(15, backButton, refreshButton, spacer);
+        HBox topBar = new HBox(15, backButton, refreshButton, spacer, exportButton);
         topBar.setAlignment(Pos.CENTER_LEFT);
         topBar.setPadding(new Insets(15, 25, 15, 25));
         topBar.setStyle("-fx-background-color: " + BACKGROUND_CONTENT + "; -fx-border-color: " + BORDER_COLOR_LIGHT + "; -fx-border-width: 0 0 1px 0;");
@@ -115,6 +121,8 @@ public class ViewOrdersView {
         Label endDateLabel = new Label("To:");
         endDatePicker = new DatePicker();
         endDatePicker.setPromptText("End Date");
+        startDatePicker.valueProperty().addListener((obs, oldDate, newDate) -> loadOrders());
+        endDatePicker.valueProperty().addListener((obs, oldDate, newDate) -> loadOrders());
 
         Button calculateTotalButton = new Button("Calculate Total");
         styleTopBarButton(calculateTotalButton, BUTTON_ACTION_GREEN, BUTTON_ACTION_GREEN_HOVER);
@@ -197,38 +205,48 @@ public class ViewOrdersView {
             return;
         }
 
-        double totalForRange = 0;
-        int transactionsInRange = 0;
-
-        List<Order> allOrders = OrderExcelUtil.loadOrdersFromExcel();
-
-        for (Order order : allOrders) {
-            LocalDate orderDate = order.getCreatedDateTime().toLocalDate();
-            if (!orderDate.isBefore(startDate) && !orderDate.isAfter(endDate)) {
-                totalForRange += order.getOrderTotalAmount();
-                transactionsInRange++;
+        // Totalled off the JavaFX Application Thread: the first query may have to bring the order store up to date.
+        Thread totalThread = new Thread(() -> {
+            OrderStore.Totals rangeTotal;
+            try {
+                rangeTotal = OrderExcelUtil.getOrderStore().aggregate(startDate, endDate);
+            } catch (IOException e) {
+                e.printStackTrace();
+                showAlert(Alert.AlertType.ERROR, "Order Load Error", "Could not load orders: " + e.getMessage(), viewOrdersStage);
+                return;
             }
-        }
-
-        String totalText = String.format("Total for selected range (%s to %s): ₹%.2f",
-                startDate.format(DATE_FILTER_FORMATTER),
-                endDate.format(DATE_FILTER_FORMATTER),
-                totalForRange);
-
-        showAlert(Alert.AlertType.INFORMATION, "Date Range Calculation",
-                totalText + "\n(" + transactionsInRange + " transactions found)",
-                viewOrdersStage);
-
-        totalAmountLabel.setText(String.format("Range Total: ₹%.2f", totalForRange));
+            double totalForRange = rangeTotal.getTotal();
+            int transactionsInRange = rangeTotal.getOrderCount();
+
+            String totalText = String.format("Total for selected range (%s to %s): ₹%.2f",
+                    startDate.format(DATE_FILTER_FORMATTER),
+                    endDate.format(DATE_FILTER_FORMATTER),
+                    totalForRange);
+
+            showAlert(Alert.AlertType.INFORMATION, "Date Range Calculation",
+                    totalText + "\n(" + transactionsInRange + " transactions found)",
+                    viewOrdersStage);
+
+            Platform.runLater(() -> totalAmountLabel.setText(String.format("Range Total: ₹%.2f", totalForRange)));
+        }, "ViewOrders-RangeTotal");
+        totalThread.setDaemon(true);
+        totalThread.start();
     }
 
 
     private static void loadOrders() {
-        masterOrdersList.clear();
-        List<Order> ordersFromExcel = OrderExcelUtil.loadOrdersFromExcel();
-        for (Order order : ordersFromExcel) {
-            masterOrdersList.add(new DisplayableOrder(order));
+        List<DisplayableOrder> displayableOrders = new ArrayList<>();
+        LocalDate startDate = startDatePicker.getValue();
+        LocalDate endDate = endDatePicker.getValue();
+        if (startDate == null && endDate == null) {
+            OrderExcelUtil.forEachOrder(order -> displayableOrders.add(new DisplayableOrder(order)));
+        } else {
+            // Only the month partitions overlapping the picked dates are read.
+            OrderExcelUtil.forEachOrder(startDate != null ? startDate : LocalDate.MIN, endDate != null ? endDate : LocalDate.MAX,
+                    order -> displayableOrders.add(new DisplayableOrder(order)));
         }
+        displayableOrders.sort((o1, o2) -> o2.getOriginalCreatedDateTime().compareTo(o1.getOriginalCreatedDateTime()));
+        masterOrdersList.setAll(displayableOrders);
     }
 
     private static void styleTopBarButton(Button button, String baseColor, String hoverColor) {
@@ -383,8 +401,8 @@ public class ViewOrdersView {
         Optional<ButtonType> result = showAlertWithConfirmation("Confirm Delete Order", "Are you sure you want to delete Order ID: " + order.getOrderId() + "?", viewOrdersStage);
         if (result.isPresent() && result.get() == ButtonType.OK) {
             if (OrderExcelUtil.deleteOrderFromExcel(order.getOrderId(), orderDate)) {
+                masterOrdersList.remove(order);
                 showAlert(Alert.AlertType.INFORMATION, "Delete Successful", "Order " + order.getOrderId() + " has been deleted.", viewOrdersStage);
-                loadOrders();
             } else {
                 showAlert(Alert.AlertType.ERROR, "Delete Failed", "Could not delete order " + order.getOrderId() + ".", viewOrdersStage);
             }
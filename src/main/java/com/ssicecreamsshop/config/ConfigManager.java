@@ -12,6 +12,12 @@ import org.json.JSONObject;
 public class ConfigManager {
     private static final String PREF_NODE_PATH = "com/ssicecreamsshop";
     private static final String KEY_APP_DATA_DIRECTORY = "appDataDirectory"; // Single key for the main folder
+    private static final String KEY_ORDER_STORE = "orderStore";
+
+    /** Order store backed by the month-partitioned order journal. */
+    public static final String ORDER_STORE_JOURNAL = "journal";
+    /** Order store backed by an embedded SQL database in the data folder. */
+    public static final String ORDER_STORE_SQL = "sql";
 
     // Default path will be in a ".SSIceCreamShop" folder in the user's home directory
     private static final Path DEFAULT_APP_DATA_DIR = Paths.get(System.getProperty("user.home"), ".SSIceCreamShop");
@@ -46,6 +52,15 @@ public class ConfigManager {
         return Paths.get(getDataDirectoryPath(), "images").toString();
     }
 
+    /**
+     * Constructs the full path for the '.thumbnails' folder inside the images directory, which holds small
+     * copies of the menu images for the order screen. They are regenerated from the images whenever missing.
+     * @return The full path string for the thumbnails directory.
+     */
+    public static String getImageThumbnailPath() {
+        return Paths.get(getImagePath(), ".thumbnails").toString();
+    }
+
     /**
      * Constructs the full path for the 'menu_items.json' file based on the main data directory.
      * @return The full path string for the menu JSON file.
@@ -54,6 +69,24 @@ public class ConfigManager {
         return Paths.get(getDataDirectoryPath(), "menu_items.json").toString();
     }
 
+    /**
+     * Constructs the full path for the 'menu_items.journal' file, which records menu and stock changes
+     * made since 'menu_items.json' was last rewritten.
+     * @return The full path string for the menu journal file.
+     */
+    public static String getMenuJournalPath() {
+        return Paths.get(getDataDirectoryPath(), "menu_items.journal").toString();
+    }
+
+    /**
+     * Constructs the full path for the 'menu_items.cache' file, a binary copy of the parsed 'menu_items.json'
+     * that is rebuilt from the JSON file whenever it is missing or out of date.
+     * @return The full path string for the menu cache file.
+     */
+    public static String getMenuCachePath() {
+        return Paths.get(getDataDirectoryPath(), "menu_items.cache").toString();
+    }
+
     /**
      * Constructs the full path for the 'orders.xlsx' file based on the main data directory.
      * @return The full path string for the orders Excel file.
@@ -62,6 +95,50 @@ public class ConfigManager {
         return Paths.get(getDataDirectoryPath(), "orders.xlsx").toString();
     }
 
+    /**
+     * Constructs the full path for the single-file 'orders.journal' used before the journal was partitioned by month.
+     * It is only read once, to carry its orders over into the 'orders' directory.
+     * @return The full path string for the legacy orders journal file.
+     */
+    public static String getOrdersJournalPath() {
+        return Paths.get(getDataDirectoryPath(), "orders.journal").toString();
+    }
+
+    /**
+     * Constructs the full path for the 'orders' subdirectory holding the month-partitioned order journal
+     * and its manifest. The journal is the system of record for orders; 'orders.xlsx' is regenerated from it.
+     * @return The full path string for the orders directory.
+     */
+    public static String getOrdersPartitionDirectory() {
+        return Paths.get(getDataDirectoryPath(), "orders").toString();
+    }
+
+    /**
+     * Constructs the full path, without file extension, of the embedded order database in the 'orders-db' subdirectory.
+     * Only used when the SQL order store is selected.
+     * @return The base path string for the order database files.
+     */
+    public static String getOrdersDatabasePath() {
+        return Paths.get(getDataDirectoryPath(), "orders-db", "orders").toString();
+    }
+
+    /**
+     * Gets which order store records placed orders.
+     * @return {@link #ORDER_STORE_JOURNAL} (the default) or {@link #ORDER_STORE_SQL}.
+     */
+    public static String getOrderStoreType() {
+        String type = getPreferences().get(KEY_ORDER_STORE, ORDER_STORE_JOURNAL);
+        return ORDER_STORE_SQL.equals(type) ? ORDER_STORE_SQL : ORDER_STORE_JOURNAL;
+    }
+
+    /**
+     * Sets which order store records placed orders. Takes effect the next time orders are accessed.
+     * @param type {@link #ORDER_STORE_JOURNAL} or {@link #ORDER_STORE_SQL}; anything else selects the journal.
+     */
+    public static void setOrderStoreType(String type) {
+        getPreferences().put(KEY_ORDER_STORE, ORDER_STORE_SQL.equals(type) ? ORDER_STORE_SQL : ORDER_STORE_JOURNAL);
+    }
+
     /**
      * Ensures that the configured base directory, its 'images' subdirectory,
      * and a default 'menu_items.json' file exist.
@@ -86,7 +163,9 @@ public class ConfigManager {
                 Files.write(menuFile, root.toString(2).getBytes(StandardCharsets.UTF_8));
                 System.out.println("Created empty menu_items.json: " + menuFile);
             }
-            // Note: orders.xlsx is created on-the-fly by OrderExcelUtil when the first order is saved.
+            // Note: the 'orders' journal directory is created on-the-fly by OrderJournal when orders are first accessed,
+            // the 'orders-db' database is created by SqlOrderStore if that store is selected,
+            // and orders.xlsx is regenerated from the active store by OrderExcelUtil.
         } catch (IOException e) {
             System.err.println("CRITICAL ERROR: Could not create default directories/files: " + e.getMessage());
             // In a real application, you might show a user-facing error here.
@@ -1,12 +1,16 @@
 package com.ssicecreamsshop.config;
 
-import com.ssicecreamsshop.ManageInventoryView;
-import com.ssicecreamsshop.NewOrderView;
+import com.ssicecreamsshop.utils.MenuFileWatcher;
+import com.ssicecreamsshop.utils.MenuImageCache;
+import com.ssicecreamsshop.utils.MenuRepository;
+import com.ssicecreamsshop.utils.MenuThumbnails;
+import com.ssicecreamsshop.utils.OrderExcelUtil;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Alert;
@@ -43,7 +47,11 @@ public class ConfigurationDialog {
     private static final String BUTTON_ACTION_RED = "#F44336";
     private static final String BUTTON_ACTION_RED_HOVER = "#D32F2F";
 
+    private static final String ORDER_STORE_JOURNAL_LABEL = "Order journal files (default)";
+    private static final String ORDER_STORE_SQL_LABEL = "Embedded SQL database";
+
     private static TextField dataDirectoryPathField;
+    private static ComboBox<String> orderStoreComboBox;
     private static Stage dialogStage;
 
     public static void show() {
@@ -99,6 +107,14 @@ public class ConfigurationDialog {
         pathBox.setAlignment(Pos.CENTER_LEFT);
         grid.add(pathBox, 1, 0);
 
+        // --- Order Store ---
+        grid.add(new Label("Order Storage:") {{ setStyle(labelStyle); }}, 0, 1);
+        orderStoreComboBox = new ComboBox<>();
+        orderStoreComboBox.getItems().addAll(ORDER_STORE_JOURNAL_LABEL, ORDER_STORE_SQL_LABEL);
+        orderStoreComboBox.setValue(ConfigManager.ORDER_STORE_SQL.equals(ConfigManager.getOrderStoreType()) ? ORDER_STORE_SQL_LABEL : ORDER_STORE_JOURNAL_LABEL);
+        orderStoreComboBox.setStyle(fieldStyle);
+        grid.add(orderStoreComboBox, 1, 1);
+
         // Save and Cancel Buttons
         Button saveButton = new Button("Save Configuration");
         styleDialogButton(saveButton, BUTTON_ACTION_GREEN, BUTTON_ACTION_GREEN_HOVER, true, TEXT_ON_DARK);
@@ -142,13 +158,26 @@ public class ConfigurationDialog {
         }
 
         ConfigManager.setDataDirectoryPath(dataDirPath);
+        boolean sqlOrderStore = ORDER_STORE_SQL_LABEL.equals(orderStoreComboBox.getValue());
+        String orderStoreType = sqlOrderStore ? ConfigManager.ORDER_STORE_SQL : ConfigManager.ORDER_STORE_JOURNAL;
+        if (!orderStoreType.equals(ConfigManager.getOrderStoreType())) {
+            ConfigManager.setOrderStoreType(orderStoreType);
+            // Switching copies the orders across; do it now, off the JavaFX Application Thread, rather than on the next screen that reads orders.
+            Thread orderStoreSwitchThread = new Thread(OrderExcelUtil::getOrderStore, "OrderStore-Switch");
+            orderStoreSwitchThread.setDaemon(true);
+            orderStoreSwitchThread.start();
+        }
 
-        showAlert(Alert.AlertType.INFORMATION, "Configuration Saved", "Application data folder has been set to:\n" + dataDirPath);
+        showAlert(Alert.AlertType.INFORMATION, "Configuration Saved", "Application data folder has been set to:\n" + dataDirPath
+                + "\nOrders are stored in: " + orderStoreComboBox.getValue());
 
         try {
-            ManageInventoryView.loadInventoryData();
-            NewOrderView.loadMenuItemsFromJson();
-            NewOrderView.refreshMenuView();
+            // Images of the old folder are never drawn again; drop them before the views redraw from the new one.
+            MenuImageCache.clear();
+            // Reading the menu from the new folder notifies every view showing it.
+            MenuRepository.reload();
+            MenuFileWatcher.start();
+            MenuThumbnails.backfill();
         } catch (Exception ex) {
             System.err.println("Error refreshing views after config change: " + ex.getMessage());
         }
@@ -0,0 +1,39 @@
+package com.ssicecreamsshop.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A named group of menu items, in menu order. Immutable.
+ */
+public final class MenuCategory {
+    private final String name;
+    private final List<MenuItem> items;
+    private final Map<String, MenuItem> itemsByKey = new HashMap<>();
+
+    public MenuCategory(String name, List<MenuItem> items) {
+        this.name = name;
+        this.items = List.copyOf(items);
+        for (MenuItem item : this.items) {
+            itemsByKey.putIfAbsent(item.getName().toLowerCase(Locale.ROOT), item);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<MenuItem> getItems() {
+        return items;
+    }
+
+    /**
+     * @param itemName An item name, matched case-insensitively.
+     * @return The item with that name, or null if there is none.
+     */
+    public MenuItem findItem(String itemName) {
+        return itemsByKey.get(itemName.toLowerCase(Locale.ROOT));
+    }
+}
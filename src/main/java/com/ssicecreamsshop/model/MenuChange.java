@@ -0,0 +1,108 @@
+package com.ssicecreamsshop.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The difference between two menu snapshots: the items added, removed and changed, so a view can update
+ * just those instead of redrawing the whole menu. Items are matched by category and name, case-insensitively;
+ * an item whose name changed only in case counts as changed. Immutable.
+ */
+public final class MenuChange {
+    private final MenuSnapshot previous;
+    private final MenuSnapshot snapshot;
+    private final List<MenuItem> addedItems = new ArrayList<>();
+    private final List<MenuItem> removedItems = new ArrayList<>();
+    private final List<MenuItem> changedItems = new ArrayList<>();
+    private final boolean categoriesChanged;
+
+    private MenuChange(MenuSnapshot previous, MenuSnapshot snapshot) {
+        this.previous = previous;
+        this.snapshot = snapshot;
+        this.categoriesChanged = !categoryNames(previous).equals(categoryNames(snapshot));
+        if (previous == snapshot) return;
+        Map<String, MenuItem> previousItems = new HashMap<>();
+        for (MenuItem item : previous.getAllItems()) {
+            previousItems.putIfAbsent(itemKey(item), item);
+        }
+        for (MenuItem item : snapshot.getAllItems()) {
+            MenuItem before = previousItems.remove(itemKey(item));
+            if (before == null) addedItems.add(item);
+            else if (!before.equals(item)) changedItems.add(item);
+        }
+        removedItems.addAll(previousItems.values());
+    }
+
+    /**
+     * @param previous The menu as last seen; {@link MenuSnapshot#EMPTY} if there was none.
+     * @param snapshot The menu now.
+     */
+    public static MenuChange between(MenuSnapshot previous, MenuSnapshot snapshot) {
+        return new MenuChange(previous, snapshot);
+    }
+
+    public MenuSnapshot getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return The menu after the change.
+     */
+    public MenuSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public List<MenuItem> getAddedItems() {
+        return List.copyOf(addedItems);
+    }
+
+    public List<MenuItem> getRemovedItems() {
+        return List.copyOf(removedItems);
+    }
+
+    /**
+     * @return The new version of each item that is in both snapshots but differs.
+     */
+    public List<MenuItem> getChangedItems() {
+        return List.copyOf(changedItems);
+    }
+
+    /**
+     * @return true if categories were added, removed, renamed or reordered.
+     */
+    public boolean hasCategoryChanges() {
+        return categoriesChanged;
+    }
+
+    /**
+     * @return The names of the categories holding an added, removed or changed item, in no particular order.
+     */
+    public Set<String> getAffectedCategoryNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (MenuItem item : addedItems) names.add(item.getCategory());
+        for (MenuItem item : removedItems) names.add(item.getCategory());
+        for (MenuItem item : changedItems) names.add(item.getCategory());
+        return names;
+    }
+
+    public boolean isEmpty() {
+        return !categoriesChanged && addedItems.isEmpty() && removedItems.isEmpty() && changedItems.isEmpty();
+    }
+
+    private static List<String> categoryNames(MenuSnapshot menu) {
+        List<String> names = new ArrayList<>();
+        for (MenuCategory category : menu.getCategories()) {
+            names.add(category.getName());
+        }
+        return names;
+    }
+
+    private static String itemKey(MenuItem item) {
+        return item.getCategory().toLowerCase(Locale.ROOT) + '\u0000' + item.getName().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,73 @@
+package com.ssicecreamsshop.model;
+
+import java.util.Objects;
+
+/**
+ * One item on the menu. Instances are immutable; a change produces a new item through one of the {@code with...} methods.
+ */
+public final class MenuItem {
+    private final String category;
+    private final String name;
+    private final String imageName;
+    private final int price;
+    private final Integer quantity; // null means unlimited stock
+
+    public MenuItem(String category, String name, String imageName, int price, Integer quantity) {
+        this.category = category;
+        this.name = name;
+        this.imageName = imageName == null ? "" : imageName;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    // Getters
+    public String getCategory() {
+        return category;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getImageName() {
+        return imageName;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public boolean hasLimitedStock() {
+        return quantity != null;
+    }
+
+    public MenuItem withQuantity(Integer newQuantity) {
+        return new MenuItem(category, name, imageName, price, newQuantity);
+    }
+
+    public MenuItem withCategory(String newCategory) {
+        return new MenuItem(newCategory, name, imageName, price, quantity);
+    }
+
+    public MenuItem withImageName(String newImageName) {
+        return new MenuItem(category, name, newImageName, price, quantity);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MenuItem)) return false;
+        MenuItem other = (MenuItem) o;
+        return price == other.price && category.equals(other.category) && name.equals(other.name)
+                && imageName.equals(other.imageName) && Objects.equals(quantity, other.quantity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(category, name, imageName, price, quantity);
+    }
+}
@@ -0,0 +1,68 @@
+package com.ssicecreamsshop.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The whole menu at one point in time, categories in menu order. Immutable, so it can be shared
+ * between threads and kept by a view while the menu changes underneath it.
+ */
+public final class MenuSnapshot {
+    public static final MenuSnapshot EMPTY = new MenuSnapshot(List.of());
+
+    private final List<MenuCategory> categories;
+    private final Map<String, MenuCategory> categoriesByKey = new HashMap<>();
+    private final Map<String, MenuItem> itemsByKey = new HashMap<>();
+
+    public MenuSnapshot(List<MenuCategory> categories) {
+        this.categories = List.copyOf(categories);
+        for (MenuCategory category : this.categories) {
+            categoriesByKey.putIfAbsent(key(category.getName()), category);
+            for (MenuItem item : category.getItems()) {
+                itemsByKey.putIfAbsent(key(item.getName()), item);
+            }
+        }
+    }
+
+    public List<MenuCategory> getCategories() {
+        return categories;
+    }
+
+    /**
+     * @return Every item, category by category.
+     */
+    public List<MenuItem> getAllItems() {
+        List<MenuItem> items = new ArrayList<>();
+        for (MenuCategory category : categories) {
+            items.addAll(category.getItems());
+        }
+        return items;
+    }
+
+    /**
+     * @param itemName An item name, matched case-insensitively.
+     * @return The first item with that name in menu order, or null if there is none.
+     */
+    public MenuItem findItem(String itemName) {
+        return itemsByKey.get(key(itemName));
+    }
+
+    /**
+     * @return The item with that name in that category, both matched case-insensitively, or null if there is none.
+     */
+    public MenuItem findItem(String categoryName, String itemName) {
+        MenuCategory category = categoriesByKey.get(key(categoryName));
+        return category == null ? null : category.findItem(itemName);
+    }
+
+    public boolean isEmpty() {
+        return itemsByKey.isEmpty();
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
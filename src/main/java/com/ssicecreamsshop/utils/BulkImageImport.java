@@ -0,0 +1,326 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuItem;
+import com.ssicecreamsshop.model.MenuSnapshot;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Imports the images of many menu items at once from a folder or a zip file. Each image file is matched to
+ * the items whose name equals the file name without its extension, ignoring case, spaces and punctuation,
+ * so 'Mango_Kulfi.JPG' goes with the item 'Mango Kulfi' in any category. Matched files are checked, copied
+ * to the images folder and given a thumbnail by a small pool of workers, and the items are then pointed at
+ * their new images with a single write to the menu journal.
+ */
+public class BulkImageImport {
+
+    // Larger files are not menu photos; the limit also guards against oversized zip entries.
+    private static final long MAX_IMAGE_BYTES = 20L * 1024 * 1024;
+    // Each worker holds a full-size decoded image.
+    private static final int MAX_WORKERS = 4;
+    private static final int MAX_LISTED_NAMES = 10;
+
+    /**
+     * Asks for a folder or zip file of images and imports them in the background, with a progress window
+     * that can cancel the import.
+     * @param ownerStage The window that owns the choosers, progress window and alerts.
+     */
+    public static void importImages(Stage ownerStage) {
+        ButtonType folderButton = new ButtonType("Folder...");
+        ButtonType zipButton = new ButtonType("Zip File...");
+        Alert sourceChoice = new Alert(Alert.AlertType.CONFIRMATION,
+                "Image files are matched to menu items by name, e.g. 'Mango_Kulfi.jpg' for 'Mango Kulfi'.\n"
+                        + "Where are the images?",
+                folderButton, zipButton, new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE));
+        sourceChoice.setTitle("Import Menu Images");
+        sourceChoice.setHeaderText(null);
+        if (ownerStage != null) sourceChoice.initOwner(ownerStage);
+        Optional<ButtonType> choice = sourceChoice.showAndWait();
+        if (choice.isEmpty() || (choice.get() != folderButton && choice.get() != zipButton)) return;
+
+        File source;
+        if (choice.get() == folderButton) {
+            DirectoryChooser directoryChooser = new DirectoryChooser();
+            directoryChooser.setTitle("Select Folder of Menu Images");
+            source = directoryChooser.showDialog(ownerStage);
+        } else {
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Select Zip File of Menu Images");
+            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Zip Files", "*.zip"));
+            source = fileChooser.showOpenDialog(ownerStage);
+        }
+        if (source == null) return;
+
+        ImageImportTask importTask = new ImageImportTask(source.toPath(), MenuRepository.getSnapshot());
+        importTask.setOnSucceeded(e -> {
+            ImportSummary summary = importTask.getValue();
+            StringBuilder message = new StringBuilder()
+                    .append("Images imported: ").append(summary.imagesImported).append('\n')
+                    .append("Menu items updated: ").append(summary.itemsUpdated).append('\n')
+                    .append("Files not matching any item: ").append(summary.unmatchedFiles.size()).append('\n')
+                    .append("Files that could not be read as images: ").append(summary.invalidFiles.size());
+            appendNames(message, "Not matched", summary.unmatchedFiles);
+            appendNames(message, "Not readable", summary.invalidFiles);
+            ExcelExportUtil.showAlert(Alert.AlertType.INFORMATION, "Image Import Complete", message.toString(), ownerStage);
+        });
+        importTask.setOnCancelled(e -> ExcelExportUtil.showAlert(Alert.AlertType.INFORMATION, "Image Import Cancelled",
+                "No menu items were changed. Images already copied stay in the images folder.", ownerStage));
+        importTask.setOnFailed(e -> {
+            Throwable error = importTask.getException();
+            error.printStackTrace();
+            ExcelExportUtil.showAlert(Alert.AlertType.ERROR, "Image Import Error", "The images could not be imported:\n" + error.getMessage(), ownerStage);
+        });
+        ExcelExportUtil.runWithProgressDialog(importTask, "Importing Menu Images", ownerStage);
+    }
+
+    private static void appendNames(StringBuilder message, String heading, List<String> names) {
+        if (names.isEmpty()) return;
+        message.append("\n\n").append(heading).append(": ")
+                .append(String.join(", ", names.subList(0, Math.min(MAX_LISTED_NAMES, names.size()))));
+        if (names.size() > MAX_LISTED_NAMES) message.append(", ... (").append(names.size() - MAX_LISTED_NAMES).append(" more)");
+    }
+
+    /**
+     * @return The name reduced to its lower-case letters and digits, which is what file and item names are matched on.
+     */
+    static String matchKey(String name) {
+        StringBuilder key = new StringBuilder(name.length());
+        name.toLowerCase(Locale.ROOT).codePoints().filter(Character::isLetterOrDigit).forEach(key::appendCodePoint);
+        return key.toString();
+    }
+
+    private static String baseName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    /**
+     * Counts and file names of one finished import.
+     */
+    private static final class ImportSummary {
+        private final int imagesImported;
+        private final int itemsUpdated;
+        private final List<String> unmatchedFiles;
+        private final List<String> invalidFiles;
+
+        ImportSummary(int imagesImported, int itemsUpdated, List<String> unmatchedFiles, List<String> invalidFiles) {
+            this.imagesImported = imagesImported;
+            this.itemsUpdated = itemsUpdated;
+            this.unmatchedFiles = unmatchedFiles;
+            this.invalidFiles = invalidFiles;
+        }
+    }
+
+    /**
+     * One image file in the folder or zip file being imported.
+     */
+    private interface ImageSource {
+        String fileName();
+
+        long size() throws IOException;
+
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Matches the files to the menu, imports the matched ones in parallel, then updates the menu. Cancelling
+     * stops the import before the menu is updated; once the menu is being saved the import runs to the end.
+     */
+    private static final class ImageImportTask extends ExcelExportUtil.CancellableImportTask<ImportSummary> {
+        private final Path source;
+        private final MenuSnapshot menu;
+
+        ImageImportTask(Path source, MenuSnapshot menu) {
+            this.source = source;
+            this.menu = menu;
+        }
+
+        @Override
+        protected ImportSummary call() throws Exception {
+            updateMessage("Looking for images...");
+            Map<String, List<String>> itemNamesByKey = new HashMap<>();
+            for (MenuItem item : menu.getAllItems()) {
+                List<String> itemNames = itemNamesByKey.computeIfAbsent(matchKey(item.getName()), k -> new ArrayList<>());
+                if (!itemNames.contains(item.getName())) itemNames.add(item.getName());
+            }
+
+            if (Files.isDirectory(source)) {
+                List<ImageSource> files = new ArrayList<>();
+                try (Stream<Path> paths = Files.walk(source)) {
+                    paths.filter(Files::isRegularFile).forEach(path -> files.add(fileSource(path)));
+                }
+                return importAll(files, itemNamesByKey);
+            }
+            try (ZipFile zipFile = new ZipFile(source.toFile())) {
+                List<ImageSource> entries = new ArrayList<>();
+                zipFile.stream().filter(entry -> !entry.isDirectory()).forEach(entry -> entries.add(zipSource(zipFile, entry)));
+                return importAll(entries, itemNamesByKey);
+            }
+        }
+
+        private ImportSummary importAll(List<ImageSource> files, Map<String, List<String>> itemNamesByKey) throws Exception {
+            // The first file for each item wins; its other files, e.g. in another subfolder, count as unmatched.
+            Map<String, ImageSource> filesByKey = new LinkedHashMap<>();
+            List<String> unmatchedFiles = new ArrayList<>();
+            for (ImageSource file : files) {
+                String fileName = file.fileName();
+                // Skip hidden files and the metadata some archivers add next to each file.
+                if (fileName.startsWith(".") || !MenuThumbnails.isImageName(fileName)) continue;
+                String key = matchKey(baseName(fileName));
+                if (!itemNamesByKey.containsKey(key) || filesByKey.putIfAbsent(key, file) != null) unmatchedFiles.add(fileName);
+            }
+
+            Path imagesDir = Paths.get(ConfigManager.getImagePath());
+            Files.createDirectories(imagesDir);
+            int total = filesByKey.size();
+            updateProgress(0, total);
+            updateMessage("Importing " + total + " images...");
+
+            int threads = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "BulkImageImport-Worker");
+                t.setDaemon(true);
+                return t;
+            });
+            Map<String, String> imageNamesByItemName = new HashMap<>();
+            List<String> invalidFiles = new ArrayList<>();
+            int imagesImported = 0;
+            try {
+                CompletionService<String> completion = new ExecutorCompletionService<>(pool);
+                Map<Future<String>, String> keysByFuture = new HashMap<>();
+                for (Map.Entry<String, ImageSource> entry : filesByKey.entrySet()) {
+                    keysByFuture.put(completion.submit(() -> importImage(entry.getValue(), imagesDir)), entry.getKey());
+                }
+                for (int done = 1; done <= total; done++) {
+                    if (isCancelled()) return null;
+                    Future<String> result = completion.take();
+                    String key = keysByFuture.get(result);
+                    String imageName;
+                    try {
+                        imageName = result.get();
+                    } catch (ExecutionException e) {
+                        System.err.println("Error importing image " + filesByKey.get(key).fileName() + ": " + e.getCause().getMessage());
+                        imageName = null;
+                    }
+                    if (imageName == null) {
+                        invalidFiles.add(filesByKey.get(key).fileName());
+                    } else {
+                        imagesImported++;
+                        for (String itemName : itemNamesByKey.get(key)) imageNamesByItemName.put(itemName, imageName);
+                    }
+                    updateProgress(done, total);
+                    updateMessage("Imported " + done + " of " + total + " images...");
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+
+            if (!startSaving()) return null;
+            updateProgress(-1, 1);
+            updateMessage("Updating the menu...");
+            int itemsUpdated = imageNamesByItemName.isEmpty() ? 0 : MenuRepository.setImageNames(imageNamesByItemName).size();
+            updateProgress(1, 1);
+            return new ImportSummary(imagesImported, itemsUpdated, unmatchedFiles, invalidFiles);
+        }
+
+        /**
+         * Checks that a file is a readable image of reasonable size, copies it into the images folder, replacing
+         * any file of the same name, and writes its thumbnail.
+         * @return The image's file name in the images folder, or null if it is not a usable image.
+         */
+        private String importImage(ImageSource file, Path imagesDir) throws IOException {
+            if (file.size() > MAX_IMAGE_BYTES) return null;
+            byte[] bytes;
+            try (InputStream in = file.open()) {
+                bytes = in.readNBytes((int) MAX_IMAGE_BYTES + 1);
+            }
+            if (bytes.length > MAX_IMAGE_BYTES) return null;
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (image == null) return null;
+
+            String imageName = file.fileName();
+            Path imagesRoot = imagesDir.toAbsolutePath().normalize();
+            Path imagePath = imagesRoot.resolve(imageName).normalize();
+            if (imageName.isEmpty() || !imagesRoot.equals(imagePath.getParent())) {
+                System.err.println("Skipping image with an unsafe file name: " + imageName);
+                return null;
+            }
+            Path tempPath = Files.createTempFile(imagesDir, "import-", ".tmp");
+            try {
+                Files.write(tempPath, bytes);
+                try {
+                    Files.move(tempPath, imagePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    Files.move(tempPath, imagePath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+            MenuThumbnails.write(imageName, image);
+            return imageName;
+        }
+    }
+
+    private static ImageSource fileSource(Path path) {
+        return new ImageSource() {
+            @Override
+            public String fileName() { return path.getFileName().toString(); }
+
+            @Override
+            public long size() throws IOException { return Files.size(path); }
+
+            @Override
+            public InputStream open() throws IOException { return Files.newInputStream(path); }
+        };
+    }
+
+    private static ImageSource zipSource(ZipFile zipFile, ZipEntry entry) {
+        // Only the last part of the entry's path is used, whichever separator the zip tool wrote;
+        // importImage still refuses any name that would land outside the images folder.
+        String entryName = entry.getName();
+        String fileName = entryName.substring(Math.max(entryName.lastIndexOf('/'), entryName.lastIndexOf('\\')) + 1);
+        return new ImageSource() {
+            @Override
+            public String fileName() { return fileName; }
+
+            // The size recorded in the zip may be missing (-1) or wrong; importImage also limits what it reads.
+            @Override
+            public long size() { return entry.getSize(); }
+
+            @Override
+            public InputStream open() throws IOException { return zipFile.getInputStream(entry); }
+        };
+    }
+}
@@ -2,36 +2,38 @@ package com.ssicecreamsshop.utils;
 
 import com.ssicecreamsshop.ViewOrdersView;
 import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuCategory;
+import com.ssicecreamsshop.model.MenuItem;
 import com.ssicecreamsshop.model.Order;
 import com.ssicecreamsshop.model.OrderItem;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.DialogPane;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
+import javafx.stage.Modality;
 import javafx.stage.Stage;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.stream.Collectors;
 
 
 public class ExcelExportUtil {
@@ -45,6 +47,12 @@ public class ExcelExportUtil {
     private static final String BACKGROUND_MAIN = "#E8EAF6";
 
     private static final String[] MENU_HEADERS = {"Category", "Item Name", "Price", "Image Filename", "Quantity"};
+    private static final String[] ORDER_REPORT_HEADERS = {"Order ID", "Created Date & Time", "Item Name", "Quantity", "Unit Price (₹)", "Total Item Price (₹)", "Complete Order Total (₹)"};
+    private static final int[] ORDER_REPORT_COLUMN_WIDTHS = {38, 21, 28, 10, 15, 20, 24};
+    private static final int REPORT_ROW_WINDOW = 100;
+    // Excel allows 1,048,576 rows per sheet; leave headroom below it.
+    private static final int MAX_ROWS_PER_SHEET = 1_000_000;
+    private static final int PROGRESS_INTERVAL = 500;
 
     // This method remains for exporting the menu from ManageInventoryView
     public static void exportToExcel(Stage ownerStage) {
@@ -82,30 +90,17 @@ public class ExcelExportUtil {
             }
 
             int rowIndex = 1;
-            try (InputStream inputStream = Files.newInputStream(menuJsonPath)) {
-                String jsonText = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))
-                        .lines().collect(Collectors.joining("\n"));
-                JSONObject rootJson = new JSONObject(jsonText);
-                JSONArray categoriesArray = rootJson.optJSONArray("categories");
-
-                if (categoriesArray != null) {
-                    for (int i = 0; i < categoriesArray.length(); i++) {
-                        JSONObject categoryObj = categoriesArray.getJSONObject(i);
-                        String categoryName = categoryObj.getString("name");
-                        JSONArray itemsArray = categoryObj.getJSONArray("items");
-                        for (int j = 0; j < itemsArray.length(); j++) {
-                            JSONObject itemObj = itemsArray.getJSONObject(j);
-                            Row dataRow = sheet.createRow(rowIndex++);
-                            dataRow.createCell(0).setCellValue(categoryName);
-                            dataRow.createCell(1).setCellValue(itemObj.getString("name"));
-                            dataRow.createCell(2).setCellValue(itemObj.getInt("price"));
-                            dataRow.createCell(3).setCellValue(itemObj.optString("imageName", ""));
-                            if (itemObj.has("quantity")) {
-                                dataRow.createCell(4).setCellValue(itemObj.getInt("quantity"));
-                            } else {
-                                dataRow.createCell(4).setCellValue("Unlimited");
-                            }
-                        }
+            for (MenuCategory category : MenuRepository.getSnapshot().getCategories()) {
+                for (MenuItem item : category.getItems()) {
+                    Row dataRow = sheet.createRow(rowIndex++);
+                    dataRow.createCell(0).setCellValue(category.getName());
+                    dataRow.createCell(1).setCellValue(item.getName());
+                    dataRow.createCell(2).setCellValue(item.getPrice());
+                    dataRow.createCell(3).setCellValue(item.getImageName());
+                    if (item.hasLimitedStock()) {
+                        dataRow.createCell(4).setCellValue(item.getQuantity());
+                    } else {
+                        dataRow.createCell(4).setCellValue("Unlimited");
                     }
                 }
             }
@@ -126,6 +121,14 @@ public class ExcelExportUtil {
     }
 
     // --- UPDATED METHOD TO EXPORT ORDERS ---
+    /**
+     * Exports the given orders to an .xlsx report chosen by the user. The report is written by a background
+     * task with a progress dialog that can cancel it. It is streamed through an {@link SXSSFWorkbook}, which keeps
+     * only {@link #REPORT_ROW_WINDOW} rows in memory, and continues on a new sheet every {@link #MAX_ROWS_PER_SHEET}
+     * rows, so reports larger than one sheet can hold are exported in bounded memory.
+     * @param ordersToExport The orders to export, in the order they should appear.
+     * @param ownerStage The window that owns the file chooser, progress dialog and alerts.
+     */
     public static void exportOrdersToExcel(List<ViewOrdersView.DisplayableOrder> ordersToExport, Stage ownerStage) {
         if (ordersToExport == null || ordersToExport.isEmpty()) {
             showAlert(Alert.AlertType.INFORMATION, "Export Info", "There are no orders in the current view to export.", ownerStage);
@@ -141,53 +144,175 @@ public class ExcelExportUtil {
         File file = fileChooser.showSaveDialog(ownerStage);
         if (file == null) return;
 
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("Orders Report");
+        // Snapshot the orders on the FX thread; the view's list may change while the report is being written.
+        List<Order> orders = new ArrayList<>(ordersToExport.size());
+        for (ViewOrdersView.DisplayableOrder orderView : ordersToExport) {
+            orders.add(orderView.getOriginalOrder());
+        }
 
-            String[] headers = {"Order ID", "Created Date & Time", "Item Name", "Quantity", "Unit Price (₹)", "Total Item Price (₹)", "Complete Order Total (₹)"};
-            Row headerRow = sheet.createRow(0);
-            CellStyle headerStyle = workbook.createCellStyle();
-            Font headerFont = workbook.createFont();
-            headerFont.setBold(true);
-            headerStyle.setFont(headerFont);
+        OrdersReportTask exportTask = new OrdersReportTask(orders, file.toPath());
+        exportTask.setOnSucceeded(e -> showAlert(Alert.AlertType.INFORMATION, "Export Successful",
+                "Orders report successfully exported to:\n" + file.getAbsolutePath()
+                        + (exportTask.getValue() > 1 ? "\n(" + exportTask.getValue() + " sheets)" : ""), ownerStage));
+        exportTask.setOnCancelled(e -> showAlert(Alert.AlertType.INFORMATION, "Export Cancelled", "The orders report was not saved.", ownerStage));
+        exportTask.setOnFailed(e -> {
+            Throwable error = exportTask.getException();
+            error.printStackTrace();
+            showAlert(Alert.AlertType.ERROR, "Export Error", "Failed to create or write to the Excel file:\n" + error.getMessage(), ownerStage);
+        });
+        runWithProgressDialog(exportTask, "Exporting Orders Report", ownerStage);
+    }
 
-            for (int i = 0; i < headers.length; i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers[i]);
-                cell.setCellStyle(headerStyle);
-            }
+    private static Sheet createReportSheet(SXSSFWorkbook workbook, CellStyle headerStyle) {
+        int sheetNumber = workbook.getNumberOfSheets() + 1;
+        Sheet sheet = workbook.createSheet(sheetNumber == 1 ? "Orders Report" : "Orders Report (" + sheetNumber + ")");
+        // Streamed sheets cannot be auto-sized without tracking every cell, so the columns get fixed widths.
+        for (int i = 0; i < ORDER_REPORT_HEADERS.length; i++) {
+            sheet.setColumnWidth(i, ORDER_REPORT_COLUMN_WIDTHS[i] * 256);
+        }
+        Row headerRow = sheet.createRow(0);
+        for (int i = 0; i < ORDER_REPORT_HEADERS.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(ORDER_REPORT_HEADERS[i]);
+            cell.setCellStyle(headerStyle);
+        }
+        return sheet;
+    }
 
-            int rowIndex = 1;
+    /**
+     * Streams the orders report to a temporary file next to the target and moves it into place once complete,
+     * so a cancelled or failed export leaves no partial file behind. The task's value is the number of sheets written.
+     */
+    private static class OrdersReportTask extends Task<Integer> {
+        private final List<Order> orders;
+        private final Path targetPath;
+
+        OrdersReportTask(List<Order> orders, Path targetPath) {
+            this.orders = orders;
+            this.targetPath = targetPath;
+        }
+
+        @Override
+        protected Integer call() throws IOException {
+            Path tempPath = targetPath.resolveSibling(targetPath.getFileName() + ".tmp");
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            for (ViewOrdersView.DisplayableOrder orderView : ordersToExport) {
-                Order order = orderView.getOriginalOrder(); // Get the underlying Order object
-                for (OrderItem item : order.getOrderItems()) {
-                    Row row = sheet.createRow(rowIndex++);
-                    row.createCell(0).setCellValue(order.getOrderId());
-                    row.createCell(1).setCellValue(order.getCreatedDateTime().format(formatter));
-                    row.createCell(2).setCellValue(item.getItemName());
-                    row.createCell(3).setCellValue(item.getQuantity());
-                    row.createCell(4).setCellValue(item.getUnitPrice());
-                    row.createCell(5).setCellValue(item.getTotalItemPrice());
-                    row.createCell(6).setCellValue(order.getOrderTotalAmount());
+            SXSSFWorkbook workbook = new SXSSFWorkbook(REPORT_ROW_WINDOW);
+            try {
+                CellStyle headerStyle = workbook.createCellStyle();
+                Font headerFont = workbook.createFont();
+                headerFont.setBold(true);
+                headerStyle.setFont(headerFont);
+
+                Sheet sheet = createReportSheet(workbook, headerStyle);
+                int rowIndex = 1;
+                for (int orderIndex = 0; orderIndex < orders.size(); orderIndex++) {
+                    if (isCancelled()) break;
+                    Order order = orders.get(orderIndex);
+                    // Start a new sheet rather than split an order's rows across two sheets.
+                    if (rowIndex + order.getOrderItems().size() > MAX_ROWS_PER_SHEET) {
+                        sheet = createReportSheet(workbook, headerStyle);
+                        rowIndex = 1;
+                    }
+                    String createdDateTime = order.getCreatedDateTime().format(formatter);
+                    for (OrderItem item : order.getOrderItems()) {
+                        Row row = sheet.createRow(rowIndex++);
+                        row.createCell(0).setCellValue(order.getOrderId());
+                        row.createCell(1).setCellValue(createdDateTime);
+                        row.createCell(2).setCellValue(item.getItemName());
+                        row.createCell(3).setCellValue(item.getQuantity());
+                        row.createCell(4).setCellValue(item.getUnitPrice());
+                        row.createCell(5).setCellValue(item.getTotalItemPrice());
+                        row.createCell(6).setCellValue(order.getOrderTotalAmount());
+                    }
+                    if (orderIndex % PROGRESS_INTERVAL == 0) {
+                        reportProgress(orderIndex, orders.size());
+                    }
                 }
-            }
+                if (isCancelled()) return workbook.getNumberOfSheets();
+                reportProgress(orders.size(), orders.size());
 
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
+                try (FileOutputStream fileOut = new FileOutputStream(tempPath.toFile())) {
+                    workbook.write(fileOut);
+                }
+                if (isCancelled()) return workbook.getNumberOfSheets();
+                Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+                return workbook.getNumberOfSheets();
+            } finally {
+                workbook.dispose();
+                workbook.close();
+                Files.deleteIfExists(tempPath);
             }
+        }
 
-            try (FileOutputStream fileOut = new FileOutputStream(file)) {
-                workbook.write(fileOut);
-                showAlert(Alert.AlertType.INFORMATION, "Export Successful", "Orders report successfully exported to:\n" + file.getAbsolutePath(), ownerStage);
-            }
+        private void reportProgress(int ordersDone, int orderCount) {
+            updateProgress(ordersDone, orderCount);
+            updateMessage("Exported " + ordersDone + " of " + orderCount + " orders...");
+        }
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-            showAlert(Alert.AlertType.ERROR, "Export Error", "Failed to create or write to the Excel file:\n" + e.getMessage(), ownerStage);
+    /**
+     * A background import that can be cancelled until it starts saving its result; from then on it runs to the
+     * end, so its outcome is always reported. Subclasses call {@link #startSaving()} just before changing anything.
+     */
+    abstract static class CancellableImportTask<V> extends Task<V> {
+        private boolean saving;
+
+        /**
+         * Cancels the import unless it is already saving, which would leave the outcome unreported.
+         */
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            return !saving && super.cancel(mayInterruptIfRunning);
+        }
+
+        /**
+         * @return False if the import was cancelled; otherwise it can no longer be.
+         */
+        protected synchronized boolean startSaving() {
+            if (isCancelled()) return false;
+            saving = true;
+            return true;
         }
     }
 
+    /**
+     * Runs a task on a background thread while a small modal window shows its progress and offers to cancel it.
+     * The window closes when the task finishes, whatever the outcome; the task's own handlers report the result.
+     */
+    static void runWithProgressDialog(Task<?> task, String title, Stage ownerStage) {
+        Stage progressStage = new Stage();
+        progressStage.initModality(Modality.WINDOW_MODAL);
+        if (ownerStage != null) progressStage.initOwner(ownerStage);
+        progressStage.setTitle(title);
+        progressStage.setResizable(false);
+
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(320);
+        progressBar.progressProperty().bind(task.progressProperty());
+        Label messageLabel = new Label("Starting...");
+        messageLabel.textProperty().bind(task.messageProperty());
+        Button cancelButton = new Button("Cancel");
+        String btnStyle = "-fx-text-fill: " + TEXT_ON_DARK + "; -fx-font-weight: bold; -fx-padding: 6 12px; -fx-background-radius: 4px;";
+        cancelButton.setStyle(btnStyle + "-fx-background-color: " + BUTTON_ACTION_RED + ";");
+        cancelButton.setOnAction(e -> task.cancel());
+        progressStage.setOnCloseRequest(e -> task.cancel());
+
+        VBox layout = new VBox(12, messageLabel, progressBar, cancelButton);
+        layout.setAlignment(Pos.CENTER);
+        layout.setPadding(new Insets(20));
+        layout.setStyle("-fx-font-family: 'Segoe UI', Arial, sans-serif; -fx-font-size: 13px; -fx-background-color: " + BACKGROUND_MAIN + ";");
+        progressStage.setScene(new Scene(layout));
+
+        task.runningProperty().addListener((obs, wasRunning, isRunning) -> {
+            if (!isRunning) progressStage.close();
+        });
+
+        Thread worker = new Thread(task, title.replace(' ', '-'));
+        worker.setDaemon(true);
+        worker.start();
+        progressStage.show();
+    }
+
     // --- NEW METHOD TO IMPORT ORDERS ---
     public static void importOrdersFromExcel(Stage ownerStage) {
         FileChooser fileChooser = new FileChooser();
@@ -200,25 +325,20 @@ public class ExcelExportUtil {
         }
 
         try {
-            List<Order> existingOrders = OrderExcelUtil.loadOrdersFromExcel();
-            Set<String> existingOrderIds = existingOrders.stream().map(Order::getOrderId).collect(Collectors.toSet());
-
-            List<Order> newOrdersToImport = parseOrdersFromImportFile(fileToImport, existingOrderIds);
+            Set<String> knownOrderIds = OrderExcelUtil.getOrderStore().getOrderIds();
+            ImportScan scan = scanImportFile(fileToImport, knownOrderIds);
 
-            if (newOrdersToImport.isEmpty()) {
+            if (scan.newOrders.isEmpty()) {
                 showAlert(Alert.AlertType.INFORMATION, "Import Complete", "No new, unique orders were found in the selected file to import.", ownerStage);
                 return;
             }
 
-            for (Order order : newOrdersToImport) {
-                OrderExcelUtil.saveOrderToExcel(order); // This method correctly calculates incremental totals
-            }
-
-            int skippedCount = countTotalOrdersInFile(fileToImport) - newOrdersToImport.size();
+            // One bulk append for the whole import instead of one write per order.
+            OrderExcelUtil.saveOrders(scan.newOrders);
 
             showAlert(Alert.AlertType.INFORMATION, "Import Successful",
-                    "Successfully imported " + newOrdersToImport.size() + " new orders.\n" +
-                            "Skipped " + skippedCount + " orders that already existed.",
+                    "Successfully imported " + scan.newOrders.size() + " new orders.\n" +
+                            "Skipped " + scan.skippedCount + " orders that already existed.",
                     ownerStage);
 
         } catch (Exception e) {
@@ -227,63 +347,31 @@ public class ExcelExportUtil {
         }
     }
 
-    private static List<Order> parseOrdersFromImportFile(File file, Set<String> existingIds) throws IOException {
-        Map<String, List<OrderItem>> orderItemsMap = new LinkedHashMap<>();
-        Map<String, LocalDateTime> orderCreationTimeMap = new HashMap<>();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-        try (InputStream fis = new FileInputStream(file); Workbook workbook = WorkbookFactory.create(fis)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-
-                String orderId = getCellStringValue(row.getCell(0));
-                if (orderId.isEmpty() || existingIds.contains(orderId)) {
-                    continue; // Skip empty or duplicate orders
-                }
-
-                LocalDateTime createdDateTime = LocalDateTime.parse(getCellStringValue(row.getCell(1)), formatter);
-                String itemName = getCellStringValue(row.getCell(2));
-                int quantity = (int) Double.parseDouble(getCellStringValue(row.getCell(3)));
-                double unitPrice = Double.parseDouble(getCellStringValue(row.getCell(4)));
-
-                orderCreationTimeMap.putIfAbsent(orderId, createdDateTime);
-                orderItemsMap.computeIfAbsent(orderId, k -> new ArrayList<>()).add(new OrderItem(itemName, quantity, unitPrice));
+    /**
+     * Reads the import file once. The reader merges all rows of an order, wherever they are in the sheet,
+     * so each whole order is checked against the IDs already recorded and counted once.
+     */
+    private static ImportScan scanImportFile(File file, Set<String> knownOrderIds) throws IOException {
+        ImportScan scan = new ImportScan();
+        OrderSheetReader.readOrdersReport(file, order -> {
+            if (knownOrderIds.contains(order.getOrderId())) {
+                scan.skippedCount++;
+            } else {
+                scan.newOrders.add(order);
             }
-        }
-
-        List<Order> newOrders = new ArrayList<>();
-        for (Map.Entry<String, List<OrderItem>> entry : orderItemsMap.entrySet()) {
-            newOrders.add(new Order(entry.getKey(), orderCreationTimeMap.get(entry.getKey()), entry.getValue()));
-        }
-
-        newOrders.sort((o1, o2) -> o1.getCreatedDateTime().compareTo(o2.getCreatedDateTime())); // Sort chronologically before saving
-        return newOrders;
-    }
+        });
 
-    private static int countTotalOrdersInFile(File file) {
-        Set<String> orderIds = new java.util.HashSet<>();
-        try (InputStream fis = new FileInputStream(file); Workbook workbook = WorkbookFactory.create(fis)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-                String orderId = getCellStringValue(row.getCell(0));
-                if (!orderId.isEmpty()) orderIds.add(orderId);
-            }
-        } catch (Exception e) { /* ignore */ }
-        return orderIds.size();
+        scan.newOrders.sort((o1, o2) -> o1.getCreatedDateTime().compareTo(o2.getCreatedDateTime())); // Sort chronologically before saving
+        return scan;
     }
 
-    private static String getCellStringValue(Cell cell) {
-        if (cell == null) return "";
-        DataFormatter formatter = new DataFormatter();
-        return formatter.formatCellValue(cell).trim();
+    private static class ImportScan {
+        private final List<Order> newOrders = new ArrayList<>();
+        private int skippedCount = 0;
     }
 
 
-    private static void showAlert(Alert.AlertType alertType, String title, String message, Stage owner) {
+    static void showAlert(Alert.AlertType alertType, String title, String message, Stage owner) {
         Platform.runLater(() -> {
             Alert alert = new Alert(alertType);
             alert.setTitle(title);
@@ -1,9 +1,8 @@
 package com.ssicecreamsshop.utils;
 
-import com.ssicecreamsshop.ManageInventoryView;
-import com.ssicecreamsshop.NewOrderView;
-import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuItem;
 import javafx.application.Platform;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -19,22 +18,22 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.usermodel.Cell;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Window that adds or updates menu items from an Excel sheet. The sheet is read and the menu updated by a
+ * background task, which the window shows the progress of and can cancel until the menu is being saved.
+ * Log lines from the task are queued and added to the log list in chunks, one UI update per pulse at most,
+ * and the list keeps only the last {@value #MAX_LOG_LINES} lines.
+ */
 public class ExcelImportDialog {
 
     // --- Navy Blue & Yellow Theme Colors ---
@@ -55,7 +54,18 @@ public class ExcelImportDialog {
     private static Stage dialogStage;
     private static File selectedExcelFile;
     private static Label selectedFileLabel;
-    private static TextArea logArea;
+    private static ListView<String> logView;
+    private static HBox progressBox;
+    private static ProgressBar progressBar;
+    private static Label progressLabel;
+    private static Button importButton;
+    private static Button cancelButton;
+    private static ImportTask runningImport;
+
+    private static final int MAX_LOG_LINES = 2000;
+    private static final int PROGRESS_INTERVAL = 50;
+    private static final Queue<String> pendingLogLines = new ConcurrentLinkedQueue<>();
+    private static final AtomicBoolean logFlushScheduled = new AtomicBoolean(false);
 
     private static final int COL_CATEGORY = 0;
     private static final int COL_ITEM_NAME = 1;
@@ -63,15 +73,6 @@ public class ExcelImportDialog {
     private static final int COL_IMAGE_FILENAME = 3;
     private static final int COL_QUANTITY = 4;
 
-    private static class ImportedItem {
-        String category, name, imageName;
-        int price;
-        Integer quantity;
-        ImportedItem(String category, String name, int price, String imageName, Integer quantity) {
-            this.category = category; this.name = name; this.price = price; this.imageName = imageName; this.quantity = quantity;
-        }
-    }
-
     public static void show() {
         dialogStage = new Stage();
         dialogStage.initModality(Modality.APPLICATION_MODAL);
@@ -108,7 +109,7 @@ public class ExcelImportDialog {
             selectedExcelFile = fileChooser.showOpenDialog(dialogStage);
             if (selectedExcelFile != null) {
                 selectedFileLabel.setText("Selected: " + selectedExcelFile.getName());
-                logArea.setText("File selected: " + selectedExcelFile.getAbsolutePath() + "\nReady to import.");
+                logView.getItems().setAll("File selected: " + selectedExcelFile.getAbsolutePath(), "Ready to import.");
             } else {
                 selectedFileLabel.setText("No file selected.");
             }
@@ -118,24 +119,39 @@ public class ExcelImportDialog {
         topPane.getChildren().addAll(instructionLabel, fileSelectionHBox);
         rootLayout.setTop(topPane);
 
-        logArea = new TextArea();
-        logArea.setEditable(false);
-        logArea.setWrapText(true);
-        logArea.setPromptText("Import logs will appear here...");
-        logArea.setStyle("-fx-font-family: 'Monospaced', 'Consolas', monospace; -fx-font-size: 12.5px; -fx-control-inner-background: #fafafa; -fx-text-fill: #333; -fx-border-color: " + BORDER_COLOR_LIGHT + "; -fx-border-radius: 5px; -fx-background-radius: 5px;");
-        logArea.setEffect(new DropShadow(3, Color.web(SHADOW_COLOR)));
-        BorderPane.setMargin(logArea, new Insets(15, 25, 15, 25));
-        rootLayout.setCenter(logArea);
-
-        Button importButton = new Button("🚀 Import Data");
+        logView = new ListView<>();
+        logView.setPlaceholder(new Label("Import logs will appear here..."));
+        logView.setStyle("-fx-font-family: 'Monospaced', 'Consolas', monospace; -fx-font-size: 12.5px; -fx-control-inner-background: #fafafa; -fx-text-fill: #333; -fx-border-color: " + BORDER_COLOR_LIGHT + "; -fx-border-radius: 5px; -fx-background-radius: 5px;");
+        logView.setEffect(new DropShadow(3, Color.web(SHADOW_COLOR)));
+        BorderPane.setMargin(logView, new Insets(15, 25, 15, 25));
+        rootLayout.setCenter(logView);
+
+        progressBar = new ProgressBar(0);
+        progressBar.setPrefWidth(320);
+        progressLabel = new Label();
+        progressLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: #424242;");
+        progressBox = new HBox(12, progressBar, progressLabel);
+        progressBox.setAlignment(Pos.CENTER_LEFT);
+        progressBox.setVisible(false);
+        progressBox.setManaged(false);
+
+        importButton = new Button("🚀 Import Data");
         styleDialogButton(importButton, BUTTON_ACTION_GREEN, BUTTON_ACTION_GREEN_HOVER, true);
         importButton.setOnAction(e -> processExcelImport());
 
+        cancelButton = new Button("Cancel Import");
+        styleDialogButton(cancelButton, BUTTON_ACTION_RED, BUTTON_ACTION_RED_HOVER, true);
+        cancelButton.setDisable(true);
+        cancelButton.setOnAction(e -> { if (runningImport != null) runningImport.cancel(); });
+
         Button closeButton = new Button("Close Window");
         styleDialogButton(closeButton, BUTTON_CLOSE_GRAY, BUTTON_CLOSE_GRAY_HOVER, true);
         closeButton.setOnAction(e -> dialogStage.close());
+        dialogStage.setOnHidden(e -> { if (runningImport != null) runningImport.cancel(); });
 
-        HBox bottomBar = new HBox(20, importButton, closeButton);
+        HBox buttonBar = new HBox(20, importButton, cancelButton, closeButton);
+        buttonBar.setAlignment(Pos.CENTER);
+        VBox bottomBar = new VBox(12, progressBox, buttonBar);
         bottomBar.setAlignment(Pos.CENTER);
         bottomBar.setPadding(new Insets(20, 25, 25, 25));
         rootLayout.setBottom(bottomBar);
@@ -158,78 +174,75 @@ public class ExcelImportDialog {
     private static void processExcelImport() {
         if (selectedExcelFile == null) {
             showAlert(Alert.AlertType.WARNING, "No File Selected", "Please select an Excel file first.");
-            logArea.appendText("\nERROR: No Excel file selected for import.");
+            log("ERROR: No Excel file selected for import.");
             return;
         }
-
-        logArea.setText("Starting import from: " + selectedExcelFile.getName() + "...\n");
-        List<ImportedItem> importedItems = new ArrayList<>();
-        int rowNum = 0; int itemsSkipped = 0;
-
-        try (FileInputStream fis = new FileInputStream(selectedExcelFile);
-             Workbook workbook = WorkbookFactory.create(fis)) {
-
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet == null) {
-                showAlert(Alert.AlertType.ERROR, "Import Error", "No sheet found in the Excel file.");
-                logArea.appendText("ERROR: No sheet found in the Excel file.\n");
-                return;
-            }
-
-            logArea.appendText("Reading sheet: " + sheet.getSheetName() + "\n");
-
-            for (Row row : sheet) {
-                rowNum++;
-                if (rowNum == 1) { logArea.appendText("Skipping header row (Row 1).\n"); continue; }
-
-                Cell categoryCell = row.getCell(COL_CATEGORY); Cell nameCell = row.getCell(COL_ITEM_NAME); Cell priceCell = row.getCell(COL_PRICE);
-                Cell imageCell = row.getCell(COL_IMAGE_FILENAME); Cell quantityCell = row.getCell(COL_QUANTITY);
-
-                if (isCellEmpty(categoryCell) || isCellEmpty(nameCell) || isCellEmpty(priceCell)) {
-                    logArea.appendText("WARNING: Row " + rowNum + ": Skipping due to missing Category, Name, or Price.\n");
-                    itemsSkipped++; continue;
-                }
-
-                String category = getCellStringValue(categoryCell).trim();
-                String itemName = getCellStringValue(nameCell).trim();
-                String imageName = isCellEmpty(imageCell) ? "" : getCellStringValue(imageCell).trim();
-                int price = 0;
-                Integer quantity = null;
-
-                try { price = (int) Double.parseDouble(getCellStringValue(priceCell)); if (price <= 0) throw new NumberFormatException(); }
-                catch (NumberFormatException e) { logArea.appendText("WARNING: Row " + rowNum + " ("+itemName+"): Invalid price. Skipping.\n"); itemsSkipped++; continue; }
-
-                try {
-                    if (!isCellEmpty(quantityCell)) quantity = (int) Double.parseDouble(getCellStringValue(quantityCell));
-                } catch (NumberFormatException e) { logArea.appendText("WARNING: Row " + rowNum + " ("+itemName+"): Invalid quantity. Stock will be unlimited. \n"); }
-
-                importedItems.add(new ImportedItem(category, itemName, price, imageName, quantity));
-                logArea.appendText("Read Row " + rowNum + ": " + category + ", " + itemName + ", " + price + ", " + (quantity != null ? quantity : "Unlimited") + "\n");
-            }
-
-            if (importedItems.isEmpty()) {
-                logArea.appendText("No valid items found to import.\n");
+        if (runningImport != null) return;
+
+        pendingLogLines.clear();
+        logView.getItems().clear();
+        ImportTask importTask = new ImportTask(selectedExcelFile);
+        importTask.setOnSucceeded(e -> {
+            ImportSummary summary = importTask.getValue();
+            if (summary.itemsAdded == 0 && summary.itemsUpdated == 0) {
                 showAlert(Alert.AlertType.INFORMATION, "Import Complete", "No valid items were found in the Excel file to import.");
-                return;
+            } else {
+                showAlert(Alert.AlertType.INFORMATION, "Import Successful", "Excel import complete!\n\n" + "Items Added: " + summary.itemsAdded + "\n" + "Items Updated: " + summary.itemsUpdated + "\n" + "Items Skipped: " + summary.itemsSkipped);
             }
+        });
+        importTask.setOnCancelled(e -> {
+            log("Import cancelled. The menu was not changed.");
+            if (dialogStage.isShowing()) showAlert(Alert.AlertType.INFORMATION, "Import Cancelled", "The import was cancelled; the menu was not changed.");
+        });
+        importTask.setOnFailed(e -> {
+            Throwable error = importTask.getException();
+            log("UNEXPECTED ERROR during import: " + error.getMessage());
+            error.printStackTrace();
+            showAlert(Alert.AlertType.ERROR, "Import Error", "An unexpected error occurred: " + error.getMessage());
+        });
+        importTask.runningProperty().addListener((obs, wasRunning, isRunning) -> {
+            importButton.setDisable(isRunning);
+            cancelButton.setDisable(!isRunning);
+            progressBox.setVisible(isRunning);
+            progressBox.setManaged(isRunning);
+            if (!isRunning) {
+                progressBar.progressProperty().unbind();
+                progressLabel.textProperty().unbind();
+                runningImport = null;
+            }
+        });
+        progressBar.progressProperty().bind(importTask.progressProperty());
+        progressLabel.textProperty().bind(importTask.messageProperty());
+        runningImport = importTask;
 
-            logArea.appendText("\nUpdating menu_items.json...\n");
-            UpdateResult result = batchUpdateItemsInJson(importedItems);
-
-            logArea.appendText("JSON update complete. Added: " + result.itemsAdded + ", Updated: " + result.itemsUpdated + ".\n");
-
-            ManageInventoryView.loadInventoryData();
-            NewOrderView.loadMenuItemsFromJson();
-            NewOrderView.refreshMenuView();
-            logArea.appendText("Application views refreshed.\n");
+        Thread worker = new Thread(importTask, "Menu-Excel-Import");
+        worker.setDaemon(true);
+        worker.start();
+    }
 
-            showAlert(Alert.AlertType.INFORMATION, "Import Successful", "Excel import complete!\n\n" + "Items Added: " + result.itemsAdded + "\n" + "Items Updated: " + result.itemsUpdated + "\n" + "Items Skipped: " + itemsSkipped);
+    /**
+     * Queues a line for the log list; may be called from any thread. Lines queued before the next pulse are
+     * added to the list together.
+     */
+    private static void log(String line) {
+        pendingLogLines.add(line);
+        if (logFlushScheduled.compareAndSet(false, true)) Platform.runLater(ExcelImportDialog::flushLog);
+    }
 
-        } catch (Exception e) {
-            logArea.appendText("UNEXPECTED ERROR during import: " + e.getMessage() + "\n");
-            e.printStackTrace();
-            showAlert(Alert.AlertType.ERROR, "Import Error", "An unexpected error occurred: " + e.getMessage());
+    private static void flushLog() {
+        logFlushScheduled.set(false);
+        List<String> lines = new ArrayList<>();
+        for (String line; (line = pendingLogLines.poll()) != null; ) lines.add(line);
+        if (lines.isEmpty() || logView == null) return;
+        ObservableList<String> items = logView.getItems();
+        int overflow = items.size() + lines.size() - MAX_LOG_LINES;
+        if (overflow >= items.size()) {
+            items.setAll(lines.subList(lines.size() - MAX_LOG_LINES, lines.size()));
+        } else {
+            if (overflow > 0) items.remove(0, overflow);
+            items.addAll(lines);
         }
+        logView.scrollTo(items.size() - 1);
     }
 
     private static String getCellStringValue(Cell cell) {
@@ -244,68 +257,113 @@ public class ExcelImportDialog {
     }
 
 
-    private static class UpdateResult { int itemsAdded = 0; int itemsUpdated = 0; }
+    /**
+     * Counts of one finished import.
+     */
+    private static final class ImportSummary {
+        private final int itemsAdded;
+        private final int itemsUpdated;
+        private final int itemsSkipped;
 
-    private static UpdateResult batchUpdateItemsInJson(List<ImportedItem> itemsToImport) {
-        UpdateResult result = new UpdateResult();
-        String menuJsonPathStr = ConfigManager.getMenuItemsJsonPath();
-        File menuFile = new File(menuJsonPathStr);
-        JSONObject rootJson;
+        ImportSummary(int itemsAdded, int itemsUpdated, int itemsSkipped) {
+            this.itemsAdded = itemsAdded;
+            this.itemsUpdated = itemsUpdated;
+            this.itemsSkipped = itemsSkipped;
+        }
+    }
 
-        try {
-            Path menuPathObj = Paths.get(menuJsonPathStr);
-            if (menuPathObj.getParent() != null && !Files.exists(menuPathObj.getParent())) Files.createDirectories(menuPathObj.getParent());
-            if (menuFile.exists() && menuFile.length() > 0) rootJson = new JSONObject(new String(Files.readAllBytes(menuFile.toPath()), StandardCharsets.UTF_8));
-            else { rootJson = new JSONObject(); rootJson.put("categories", new JSONArray()); }
+    /**
+     * Reads the sheet's rows into menu items, then adds or updates them in the menu with a single append to
+     * the menu journal. Cancelling while the sheet is read leaves the menu untouched; once the menu is being
+     * saved the import runs to the end.
+     */
+    private static final class ImportTask extends ExcelExportUtil.CancellableImportTask<ImportSummary> {
+        private final File excelFile;
 
-            JSONArray categoriesArray = rootJson.getJSONArray("categories");
+        ImportTask(File excelFile) {
+            this.excelFile = excelFile;
+        }
 
-            for (ImportedItem itemToImport : itemsToImport) {
-                JSONObject targetCategory = null;
-                for (int i = 0; i < categoriesArray.length(); i++) {
-                    JSONObject cat = categoriesArray.getJSONObject(i);
-                    if (cat.getString("name").equalsIgnoreCase(itemToImport.category)) {
-                        targetCategory = cat; break;
+        @Override
+        protected ImportSummary call() throws Exception {
+            log("Starting import from: " + excelFile.getName() + "...");
+            updateMessage("Opening " + excelFile.getName() + "...");
+            updateProgress(-1, 1);
+            List<MenuItem> importedItems = new ArrayList<>();
+            int rowNum = 0; int itemsSkipped = 0;
+
+            try (FileInputStream fis = new FileInputStream(excelFile);
+                 Workbook workbook = WorkbookFactory.create(fis)) {
+
+                Sheet sheet = workbook.getSheetAt(0);
+                if (sheet == null) throw new IOException("No sheet found in the Excel file.");
+
+                log("Reading sheet: " + sheet.getSheetName());
+                int rowCount = sheet.getPhysicalNumberOfRows();
+
+                for (Row row : sheet) {
+                    if (isCancelled()) return null;
+                    rowNum++;
+                    if (rowNum % PROGRESS_INTERVAL == 0) {
+                        updateProgress(rowNum, rowCount);
+                        updateMessage("Read " + rowNum + " of " + rowCount + " rows...");
                     }
-                }
-                if (targetCategory == null) {
-                    targetCategory = new JSONObject(); targetCategory.put("name", itemToImport.category);
-                    targetCategory.put("items", new JSONArray()); categoriesArray.put(targetCategory);
-                }
+                    if (rowNum == 1) { log("Skipping header row (Row 1)."); continue; }
+
+                    Cell categoryCell = row.getCell(COL_CATEGORY); Cell nameCell = row.getCell(COL_ITEM_NAME); Cell priceCell = row.getCell(COL_PRICE);
+                    Cell imageCell = row.getCell(COL_IMAGE_FILENAME); Cell quantityCell = row.getCell(COL_QUANTITY);
 
-                JSONArray itemsArray = targetCategory.getJSONArray("items");
-                boolean itemFoundAndUpdated = false;
-                for (int i = 0; i < itemsArray.length(); i++) {
-                    JSONObject existingItem = itemsArray.getJSONObject(i);
-                    if (existingItem.getString("name").equalsIgnoreCase(itemToImport.name)) {
-                        existingItem.put("price", itemToImport.price);
-                        existingItem.put("imageName", itemToImport.imageName);
-                        if (itemToImport.quantity != null) existingItem.put("quantity", itemToImport.quantity);
-                        else existingItem.remove("quantity"); // Remove for unlimited
-                        itemFoundAndUpdated = true; result.itemsUpdated++;
-                        logArea.appendText("Updated item: " + itemToImport.name + "\n");
-                        break;
+                    if (isCellEmpty(categoryCell) || isCellEmpty(nameCell) || isCellEmpty(priceCell)) {
+                        log("WARNING: Row " + rowNum + ": Skipping due to missing Category, Name, or Price.");
+                        itemsSkipped++; continue;
                     }
-                }
 
-                if (!itemFoundAndUpdated) {
-                    JSONObject newItem = new JSONObject(); newItem.put("name", itemToImport.name);
-                    newItem.put("imageName", itemToImport.imageName); newItem.put("price", itemToImport.price);
-                    if (itemToImport.quantity != null) newItem.put("quantity", itemToImport.quantity);
-                    itemsArray.put(newItem); result.itemsAdded++;
-                    logArea.appendText("Added new item: " + itemToImport.name + "\n");
+                    String category = getCellStringValue(categoryCell).trim();
+                    String itemName = getCellStringValue(nameCell).trim();
+                    String imageName = isCellEmpty(imageCell) ? "" : getCellStringValue(imageCell).trim();
+                    int price = 0;
+                    Integer quantity = null;
+
+                    try { price = (int) Double.parseDouble(getCellStringValue(priceCell)); if (price <= 0) throw new NumberFormatException(); }
+                    catch (NumberFormatException e) { log("WARNING: Row " + rowNum + " ("+itemName+"): Invalid price. Skipping."); itemsSkipped++; continue; }
+
+                    try {
+                        if (!isCellEmpty(quantityCell)) quantity = (int) Double.parseDouble(getCellStringValue(quantityCell));
+                    } catch (NumberFormatException e) { log("WARNING: Row " + rowNum + " ("+itemName+"): Invalid quantity. Stock will be unlimited."); }
+
+                    importedItems.add(new MenuItem(category, itemName, imageName, price, quantity));
+                    log("Read Row " + rowNum + ": " + category + ", " + itemName + ", " + price + ", " + (quantity != null ? quantity : "Unlimited"));
                 }
             }
-            try (FileWriter writer = new FileWriter(menuFile)) { writer.write(rootJson.toString(4)); }
-        } catch (Exception e) {
-            logArea.appendText("ERROR writing to JSON file: " + e.getMessage() + "\n");
-            e.printStackTrace();
-            showAlert(Alert.AlertType.ERROR, "JSON Write Error", "Could not write to menu_items.json: " + e.getMessage());
+
+            if (importedItems.isEmpty()) {
+                log("No valid items found to import.");
+                return new ImportSummary(0, 0, itemsSkipped);
+            }
+            if (!startSaving()) return null;
+            Platform.runLater(() -> cancelButton.setDisable(true));
+
+            updateProgress(-1, 1);
+            updateMessage("Saving " + importedItems.size() + " items to the menu...");
+            log("Updating menu_items.json...");
+            MenuRepository.UpsertResult result;
+            try {
+                result = MenuRepository.upsertItems(importedItems);
+            } catch (IOException e) {
+                throw new IOException("Could not write to menu_items.json: " + e.getMessage(), e);
+            }
+            for (String itemName : result.getUpdatedItemNames()) log("Updated item: " + itemName);
+            for (String itemName : result.getAddedItemNames()) log("Added new item: " + itemName);
+            int itemsAdded = result.getAddedItemNames().size();
+            int itemsUpdated = result.getUpdatedItemNames().size();
+
+            // The menu repository notifies the open views, so there is nothing to refresh here.
+            log("JSON update complete. Added: " + itemsAdded + ", Updated: " + itemsUpdated + ".");
+            updateProgress(1, 1);
+            return new ImportSummary(itemsAdded, itemsUpdated, itemsSkipped);
         }
-        return result;
     }
 
-
     private static void showAlert(Alert.AlertType alertType, String title, String message) {
         Platform.runLater(() -> {
             Alert alert = new Alert(alertType);
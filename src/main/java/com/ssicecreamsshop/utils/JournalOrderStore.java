@@ -0,0 +1,84 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.model.Order;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The default {@link OrderStore}: orders live in the month-partitioned {@link OrderJournal} through
+ * {@link OrderRepository}. Range totals come from its per-day index and partition manifest; per-item and
+ * hourly breakdowns are answered by scanning the {@link OrderColumnStore}.
+ * 'orders.xlsx' is exported from this store by {@link OrderExcelUtil}.
+ */
+public class JournalOrderStore implements OrderStore {
+
+    @Override
+    public void append(List<Order> orders) throws IOException {
+        OrderRepository.appendAll(orders);
+    }
+
+    @Override
+    public List<Order> loadAll() throws IOException {
+        return OrderRepository.getOrders();
+    }
+
+    @Override
+    public void forEach(LocalDate startDate, LocalDate endDate, Consumer<Order> orderConsumer) throws IOException {
+        OrderRepository.forEach(startDate, endDate, orderConsumer);
+    }
+
+    @Override
+    public boolean hasOrders() throws IOException {
+        return OrderRepository.hasOrders();
+    }
+
+    @Override
+    public Set<String> getOrderIds() throws IOException {
+        return OrderRepository.getOrderIds();
+    }
+
+    @Override
+    public boolean delete(String orderId, LocalDate createdDate) throws IOException {
+        return OrderRepository.delete(orderId, createdDate);
+    }
+
+    @Override
+    public Totals aggregate(LocalDate startDate, LocalDate endDate) throws IOException {
+        OrderRepository.DailyTotal rangeTotal = OrderRepository.getTotalForRange(startDate, endDate);
+        return new Totals(rangeTotal.getTotal(), rangeTotal.getOrderCount(), rangeTotal.getItemQuantity());
+    }
+
+    @Override
+    public List<ItemTotals> aggregateByItem(LocalDate startDate, LocalDate endDate) throws IOException {
+        return OrderColumnStore.summarizeByItem(startOf(startDate), endOf(endDate));
+    }
+
+    @Override
+    public double[] aggregateByHour(LocalDate startDate, LocalDate endDate) throws IOException {
+        return OrderColumnStore.hourlyTotals(startOf(startDate), endOf(endDate));
+    }
+
+    @Override
+    public void preload() {
+        OrderRepository.preload();
+        OrderColumnStore.preload();
+    }
+
+    @Override
+    public void close() {
+        // The journal holds no open files between calls.
+    }
+
+    private static LocalDateTime startOf(LocalDate date) {
+        return date.equals(LocalDate.MIN) ? LocalDateTime.MIN : date.atStartOfDay();
+    }
+
+    private static LocalDateTime endOf(LocalDate date) {
+        return date.equals(LocalDate.MAX) ? LocalDateTime.MAX : date.plusDays(1).atStartOfDay();
+    }
+}
@@ -0,0 +1,119 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.config.ConfigManager;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the data directory for changes to 'menu_items.json' and its journal made outside this
+ * application instance, such as a hand edit or another till sharing the folder, and has the
+ * {@link MenuRepository} pick them up. A save usually shows up as a burst of events (the temporary file
+ * being written and moved into place), so the menu is only re-checked once the directory has been quiet
+ * for a moment. The application's own writes are recognised by the repository and cause no reload.
+ */
+public class MenuFileWatcher {
+
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    private static WatchService watchService;
+    private static Path watchedDirectory;
+    private static Thread watcherThread;
+    private static ScheduledExecutorService debounceExecutor;
+    private static ScheduledFuture<?> pendingCheck;
+
+    /**
+     * Starts watching the configured data directory, or switches to it if another directory was being watched.
+     * Errors are logged; the menu can still be reloaded by hand.
+     */
+    public static synchronized void start() {
+        Path directory = Paths.get(ConfigManager.getDataDirectoryPath());
+        if (directory.equals(watchedDirectory)) return;
+        stop();
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchService = service;
+            watchedDirectory = directory;
+        } catch (IOException e) {
+            System.err.println("Could not watch the data directory for menu changes: " + e.getMessage());
+            return;
+        }
+        debounceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "MenuFileWatcher-Reload");
+            t.setDaemon(true);
+            return t;
+        });
+        WatchService service = watchService;
+        watcherThread = new Thread(() -> watch(service), "MenuFileWatcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        System.out.println("Watching " + directory + " for menu changes.");
+    }
+
+    /**
+     * Stops watching. Safe to call when not started.
+     */
+    public static synchronized void stop() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Error closing the menu file watcher: " + e.getMessage());
+        }
+        debounceExecutor.shutdownNow();
+        watchService = null;
+        watchedDirectory = null;
+        watcherThread = null;
+        debounceExecutor = null;
+        pendingCheck = null;
+    }
+
+    private static void watch(WatchService service) {
+        Path menuFileName = Paths.get(ConfigManager.getMenuItemsJsonPath()).getFileName();
+        Path journalFileName = MenuJournal.getJournalPath().getFileName();
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean menuTouched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // An overflow means events were lost, so any of them could have been the menu.
+                    menuTouched |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || menuFileName.equals(event.context()) || journalFileName.equals(event.context());
+                }
+                if (menuTouched) scheduleCheck(service);
+                if (!key.reset()) break;
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Stopped.
+        }
+    }
+
+    /**
+     * Checks the menu once no event has arrived for {@link #DEBOUNCE_MILLIS}.
+     */
+    private static synchronized void scheduleCheck(WatchService service) {
+        if (service != watchService) return;
+        if (pendingCheck != null) pendingCheck.cancel(false);
+        pendingCheck = debounceExecutor.schedule(MenuFileWatcher::checkMenu, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void checkMenu() {
+        try {
+            if (MenuRepository.reloadIfChanged()) System.out.println("Menu reloaded after an outside change.");
+        } catch (IOException e) {
+            System.err.println("Error reloading the menu after an outside change: " + e.getMessage());
+        }
+    }
+}
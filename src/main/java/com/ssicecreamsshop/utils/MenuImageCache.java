@@ -0,0 +1,144 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.config.ConfigManager;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+import javafx.scene.shape.Rectangle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Decoded menu images shared by every view that shows them.
+ * Images are decoded at the size they are drawn at, rather than at camera resolution, and in the background:
+ * {@link #createImageNode} returns the caller's placeholder and swaps the picture in once it has loaded.
+ * Decoded images are kept in a least-recently-used cache bounded by their total pixel memory, keyed by file,
+ * size and modification time, so a replaced image file is decoded afresh. Images are read from their
+ * {@link MenuThumbnails thumbnail} when it is current and large enough.
+ */
+public class MenuImageCache {
+
+    private static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+    // Access order, so iteration starts at the least recently used image.
+    private static final Map<Key, Image> images = new LinkedHashMap<>(64, 0.75f, true);
+    private static long cachedBytes = 0;
+
+    /**
+     * @param imageName File name in the images folder; may be empty.
+     * @param size Width and height of the box the image is drawn in, in pixels.
+     * @return The image, possibly still loading, or null if there is no such file.
+     */
+    public static synchronized Image getImage(String imageName, double size) {
+        if (imageName == null || imageName.isBlank()) return null;
+        Path imagePath = Paths.get(ConfigManager.getImagePath(), imageName);
+        if (size <= MenuThumbnails.THUMBNAIL_SIZE) {
+            Path thumbnailPath = MenuThumbnails.getThumbnail(imageName);
+            if (thumbnailPath != null) imagePath = thumbnailPath;
+        }
+        long modified;
+        try {
+            if (!Files.isRegularFile(imagePath)) return null;
+            modified = Files.getLastModifiedTime(imagePath).toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+        Key key = new Key(imagePath, size, modified);
+        Image image = images.get(key);
+        if (image != null) return image;
+        image = new Image(imagePath.toUri().toString(), size, size, true, true, true);
+        images.put(key, image);
+        cachedBytes += key.bytes();
+        evict();
+        return image;
+    }
+
+    /**
+     * @param imageName File name in the images folder; may be empty.
+     * @param size Width and height of the box the image is drawn in, in pixels.
+     * @param cornerArc Corner rounding of the image, in pixels.
+     * @param placeholder Shown while the image loads, and instead of it if there is none or it cannot be read.
+     * @return A node showing the image once it is available.
+     */
+    public static Node createImageNode(String imageName, double size, double cornerArc, Node placeholder) {
+        Image image = getImage(imageName, size);
+        if (image == null) return placeholder;
+        ImageView imageView = new ImageView(image);
+        imageView.setFitWidth(size);
+        imageView.setFitHeight(size);
+        imageView.setPreserveRatio(true);
+        Rectangle clip = new Rectangle(size, size);
+        clip.setArcWidth(cornerArc);
+        clip.setArcHeight(cornerArc);
+        imageView.setClip(clip);
+        if (image.getProgress() >= 1) return image.isError() ? placeholder : imageView;
+
+        StackPane holder = new StackPane(placeholder);
+        ChangeListener<Number> swapIn = new ChangeListener<>() {
+            @Override
+            public void changed(javafx.beans.value.ObservableValue<? extends Number> obs, Number oldProgress, Number progress) {
+                if (progress.doubleValue() < 1) return;
+                image.progressProperty().removeListener(this);
+                if (!image.isError()) holder.getChildren().setAll(imageView);
+            }
+        };
+        image.progressProperty().addListener(swapIn);
+        return holder;
+    }
+
+    /**
+     * Drops every cached image, for instance after the images folder moved.
+     */
+    public static synchronized void clear() {
+        images.clear();
+        cachedBytes = 0;
+    }
+
+    private static void evict() {
+        Iterator<Map.Entry<Key, Image>> eldest = images.entrySet().iterator();
+        while (cachedBytes > MAX_CACHE_BYTES && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getKey().bytes();
+            eldest.remove();
+        }
+    }
+
+    private static final class Key {
+        private final Path path;
+        private final double size;
+        private final long modified;
+
+        Key(Path path, double size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * @return The most memory the decoded image can take: 4 bytes per pixel of its bounding box.
+         */
+        long bytes() {
+            return (long) Math.ceil(size) * (long) Math.ceil(size) * 4;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return size == other.size && modified == other.modified && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, modified);
+        }
+    }
+}
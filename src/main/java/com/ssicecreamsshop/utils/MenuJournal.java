@@ -0,0 +1,191 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuItem;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only journal of changes made to the menu since 'menu_items.json' was last written.
+ * Each change is one line of JSON forced to disk, so a sale costs a few bytes per item instead of a rewrite
+ * of the whole menu. Every record carries absolute values (the new stock level, the whole item), so replaying
+ * a record that the menu file already reflects changes nothing. {@link MenuRepository} replays the journal
+ * on top of the menu file when it loads, and compacts the two by rewriting the menu file and deleting the journal.
+ * The first record names the size and modification time of the menu file the journal was started against;
+ * a journal whose menu file has since been rewritten, by a compaction or by hand, is discarded instead of replayed.
+ */
+public class MenuJournal {
+
+    static final String RECORD_TYPE_BASE = "base";
+    static final String RECORD_TYPE_STOCK = "stock";
+    static final String RECORD_TYPE_PUT = "put";
+    static final String RECORD_TYPE_REMOVE = "remove";
+
+    /**
+     * @return The journal file next to 'menu_items.json'. It may not exist.
+     */
+    public static Path getJournalPath() {
+        return Paths.get(ConfigManager.getMenuJournalPath());
+    }
+
+    /**
+     * @return The record identifying the current version of the menu file, or null if it does not exist.
+     */
+    static JSONObject baseRecord(Path menuPath) throws IOException {
+        if (!Files.exists(menuPath)) return null;
+        JSONObject record = new JSONObject();
+        record.put("type", RECORD_TYPE_BASE);
+        record.put("size", Files.size(menuPath));
+        record.put("modified", Files.getLastModifiedTime(menuPath).toMillis());
+        return record;
+    }
+
+    /**
+     * @return true if both records name the same version of the menu file.
+     */
+    static boolean sameBase(JSONObject base, JSONObject other) {
+        if (base == null || other == null) return base == other;
+        return RECORD_TYPE_BASE.equals(other.optString("type"))
+                && base.optLong("size", -1) == other.optLong("size", -2)
+                && base.optLong("modified", -1) == other.optLong("modified", -2);
+    }
+
+    /**
+     * @return The size of the journal in bytes; 0 if it does not exist.
+     */
+    static long size(Path journalPath) throws IOException {
+        return Files.exists(journalPath) ? Files.size(journalPath) : 0;
+    }
+
+    /**
+     * @return A record setting the on-hand stock of an item.
+     */
+    static JSONObject stockRecord(String categoryName, String itemName, int quantity) {
+        JSONObject record = new JSONObject();
+        record.put("type", RECORD_TYPE_STOCK);
+        record.put("category", categoryName);
+        record.put("name", itemName);
+        record.put("quantity", quantity);
+        return record;
+    }
+
+    /**
+     * @return A record adding an item, or replacing the item of the same name in its category.
+     */
+    static JSONObject putRecord(MenuItem item) {
+        JSONObject record = new JSONObject();
+        record.put("type", RECORD_TYPE_PUT);
+        record.put("category", item.getCategory());
+        record.put("name", item.getName());
+        record.put("imageName", item.getImageName());
+        record.put("price", item.getPrice());
+        if (item.hasLimitedStock()) record.put("quantity", item.getQuantity().intValue());
+        return record;
+    }
+
+    /**
+     * @return A record removing an item from its category.
+     */
+    static JSONObject removeRecord(String categoryName, String itemName) {
+        JSONObject record = new JSONObject();
+        record.put("type", RECORD_TYPE_REMOVE);
+        record.put("category", categoryName);
+        record.put("name", itemName);
+        return record;
+    }
+
+    /**
+     * Appends records to the journal with a single write and a single fsync.
+     * @param journalPath The journal file; created if missing.
+     * @param base The {@link #baseRecord(Path)} of the menu file, written first when the journal is new.
+     * @param records The records, in the order they should be replayed.
+     * @throws IOException if the records could not be written.
+     */
+    static synchronized void append(Path journalPath, JSONObject base, List<JSONObject> records) throws IOException {
+        if (records.isEmpty()) return;
+        StringBuilder lines = new StringBuilder();
+        for (JSONObject record : records) {
+            lines.append(record).append('\n');
+        }
+        if (journalPath.getParent() != null) Files.createDirectories(journalPath.getParent());
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() > 0) {
+                // Never glue a new record onto a torn one left behind by an interrupted write.
+                ByteBuffer lastByte = ByteBuffer.allocate(1);
+                channel.read(lastByte, channel.size() - 1);
+                if (lastByte.get(0) != '\n') lines.insert(0, '\n');
+            } else {
+                if (base == null) throw new IOException("Cannot start a menu journal without a menu file.");
+                lines.insert(0, base + "\n");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            channel.position(channel.size());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Streams every change record in the journal to the consumer, oldest first. Unreadable records, such as
+     * a torn trailing record after a power cut mid-write, are skipped. A journal started against another version
+     * of the menu file is deleted without being replayed.
+     * @param base The {@link #baseRecord(Path)} of the menu file as it was read.
+     * @return The number of records replayed.
+     * @throws IOException if the journal exists but could not be read.
+     */
+    static synchronized int replay(Path journalPath, JSONObject base, Consumer<JSONObject> recordConsumer) throws IOException {
+        if (!Files.exists(journalPath)) return 0;
+        int records = 0;
+        boolean baseChecked = false;
+        boolean current = false;
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                JSONObject record;
+                try {
+                    record = new JSONObject(line);
+                } catch (JSONException e) {
+                    System.err.println("Skipping unreadable menu journal record at line " + lineNumber + ": " + e.getMessage());
+                    continue;
+                }
+                if (!baseChecked) {
+                    baseChecked = true;
+                    current = sameBase(base, record);
+                    if (!current) break;
+                    continue;
+                }
+                recordConsumer.accept(record);
+                records++;
+            }
+        }
+        if (!current) {
+            System.out.println("Discarding menu journal " + journalPath + ": the menu file was rewritten after it was started.");
+            clear(journalPath);
+        }
+        return records;
+    }
+
+    /**
+     * Deletes the journal once its changes are in the menu file.
+     */
+    static synchronized void clear(Path journalPath) throws IOException {
+        Files.deleteIfExists(journalPath);
+    }
+}
@@ -0,0 +1,951 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuCategory;
+import com.ssicecreamsshop.model.MenuChange;
+import com.ssicecreamsshop.model.MenuItem;
+import com.ssicecreamsshop.model.MenuSnapshot;
+import javafx.application.Platform;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Process-wide owner of the menu held in 'menu_items.json'.
+ * The file is parsed once, and the menu is handed out as an immutable {@link MenuSnapshot} that any thread
+ * may read. Every change to the menu goes through this class, which records it and then tells the
+ * registered listeners on the JavaFX Application Thread which items were added, removed or changed, so views
+ * no longer re-read the file, refresh each other or redraw items that did not change. Changes made to the
+ * files by another program are picked up by {@link #reloadIfChanged()}, which the {@link MenuFileWatcher} calls.
+ * Changes are appended to the {@link MenuJournal} as small records rather than rewriting the whole file;
+ * loading replays the journal on top of the file, and every {@value #COMPACT_AFTER_RECORDS} records (and on
+ * {@link #compact()} at shutdown) the file is rewritten with everything in it and the journal deleted.
+ * A {@link MenuSnapshotCache} of the file spares the JSON parse when the file has not changed since it was last read.
+ * Changes are made by a single writer thread, which takes them off a queue in batches, applies each batch to
+ * the in-memory menu and journals it with one append, so changes made at the same time from several threads
+ * share one disk write; the public methods wait for their change to be journaled, as before.
+ * Categories and items are indexed by lower-case name, so finding, restocking or upserting an item costs
+ * the same however large the menu is.
+ * The stock of limited-stock items is counted by the {@link StockLedger}, which checkouts change without
+ * taking this class's lock; snapshots show the quantity available there, and {@link #flush()} writes it.
+ */
+public class MenuRepository {
+
+    private static final int COMPACT_AFTER_RECORDS = 1000;
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private static final List<CategoryEntry> categories = new ArrayList<>();
+    private static final Map<String, CategoryEntry> categoriesByKey = new HashMap<>();
+    // For each lower-case item name, the categories holding an item of that name, in menu order.
+    private static final Map<String, List<CategoryEntry>> categoriesByItemKey = new HashMap<>();
+    private static final List<Consumer<MenuChange>> listeners = new CopyOnWriteArrayList<>();
+    private static Path loadedPath;
+    private static Path loadedJournalPath;
+    private static Path loadedCachePath;
+    // Identifies the version of the menu file the journal applies to, and how many records it holds.
+    private static JSONObject menuBase;
+    private static int journalRecordCount;
+    private static long journalSize;
+    private static MenuSnapshot snapshot;
+    private static long snapshotStockVersion;
+    // The last snapshot delivered to listeners; only touched on the JavaFX Application Thread.
+    private static MenuSnapshot deliveredSnapshot;
+    // The last snapshot handed out for listeners; one reaching the JavaFX Application Thread after a newer one is skipped.
+    private static volatile MenuSnapshot latestChanged;
+    private static final AtomicBoolean stockRefreshPending = new AtomicBoolean(false);
+    private static final BlockingQueue<PendingCommand<?>> commandQueue = new LinkedBlockingQueue<>();
+    private static Thread writerThread;
+
+    /**
+     * @return The current menu, read from 'menu_items.json' on first use. If the file cannot be read
+     *         the error is logged and an empty menu is returned.
+     */
+    public static synchronized MenuSnapshot getSnapshot() {
+        try {
+            ensureLoaded();
+        } catch (IOException e) {
+            System.err.println("Error loading menu: " + e.getMessage());
+        }
+        return currentSnapshot();
+    }
+
+    /**
+     * Reads 'menu_items.json' unless it has already been read from the configured location.
+     * @throws IOException if the file is missing or cannot be parsed; the menu is empty afterwards.
+     */
+    public static synchronized void ensureLoaded() throws IOException {
+        if (loadedPath != null && loadedPath.equals(menuPath())) return;
+        reload();
+    }
+
+    /**
+     * Re-reads 'menu_items.json' and the changes journaled since, discarding the in-memory menu, and notifies listeners.
+     * Use it after the file was changed outside the application or the data directory moved.
+     * Stock sold since it was last journaled is taken off the re-read quantities and journaled again, so it is not lost.
+     * @throws IOException if the file is missing or cannot be parsed; the menu is empty afterwards.
+     */
+    public static void reload() throws IOException {
+        MenuSnapshot changed;
+        IOException failure = null;
+        synchronized (MenuRepository.class) {
+            // Only carried over when the same file is re-read; after a move to another data folder the counts belong to the old one.
+            Map<String, Integer> unjournaledStock = menuPath().equals(loadedPath) ? unjournaledStock() : Map.of();
+            clearMenu();
+            loadedPath = menuPath();
+            loadedJournalPath = MenuJournal.getJournalPath();
+            loadedCachePath = MenuSnapshotCache.getCachePath();
+            try {
+                readMenu(loadedPath);
+                carryOverStock(unjournaledStock);
+            } catch (IOException e) {
+                clearMenu();
+                // Nothing is journaled against a file that could not be read; the next change reads it again.
+                menuBase = null;
+                failure = e;
+            }
+            StockLedger.retain(trackedItemIds());
+            changed = changed();
+        }
+        notifyListeners(changed);
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Re-reads the menu if 'menu_items.json' or the journal was changed by anything other than this class,
+     * such as another copy of the application or a hand edit. Stock sold here but not journaled yet is
+     * taken off the re-read quantities and journaled against the new file by {@link #reload()}; it is not
+     * flushed beforehand, since a journal written against the replaced file would be discarded on reading.
+     * @return true if the menu was re-read.
+     * @throws IOException if the menu could not be re-read.
+     */
+    public static boolean reloadIfChanged() throws IOException {
+        synchronized (MenuRepository.class) {
+            if (loadedPath == null || !loadedPath.equals(menuPath())) return false;
+            if (MenuJournal.sameBase(menuBase, MenuJournal.baseRecord(loadedPath))
+                    && journalSize == MenuJournal.size(loadedJournalPath)) return false;
+        }
+        reload();
+        return true;
+    }
+
+    /**
+     * Adds an item to a category, creating the category if needed. Category names match case-insensitively.
+     * @param quantity Stock quantity, or null for unlimited stock.
+     * @return false if the category already has an item with that name (case-insensitive); nothing is changed.
+     * @throws IOException if the change could not be recorded; the in-memory menu is left unchanged.
+     */
+    public static boolean addItem(String categoryName, String itemName, int price, String imageName, Integer quantity) throws IOException {
+        return execute((records, undo) -> {
+            loadForWrite();
+            CategoryEntry category = categoriesByKey.get(key(categoryName));
+            if (category != null && category.itemsByKey.containsKey(key(itemName))) return false;
+            category = categoryFor(categoryName, undo);
+            MenuItem item = new MenuItem(category.name, itemName, imageName, price, quantity);
+            putItem(category, item, undo);
+            records.add(MenuJournal.putRecord(item));
+            return true;
+        });
+    }
+
+    /**
+     * Adds or replaces several items with a single append to the menu journal. An item replaces the item of
+     * the same name in the same category (case-insensitive), keeping that item's name and position.
+     * @return The names of the items that were added and of those that were updated.
+     * @throws IOException if the change could not be recorded; the in-memory menu is left unchanged.
+     */
+    public static UpsertResult upsertItems(List<MenuItem> items) throws IOException {
+        return execute((records, undo) -> {
+            loadForWrite();
+            UpsertResult result = new UpsertResult();
+            for (MenuItem item : items) {
+                CategoryEntry category = categoryFor(item.getCategory(), undo);
+                MenuItem existing = category.itemsByKey.get(key(item.getName()));
+                MenuItem stored;
+                if (existing != null) {
+                    stored = new MenuItem(category.name, existing.getName(), item.getImageName(), item.getPrice(), item.getQuantity());
+                    result.updatedItemNames.add(item.getName());
+                } else {
+                    stored = item.withCategory(category.name);
+                    result.addedItemNames.add(item.getName());
+                }
+                putItem(category, stored, undo);
+                records.add(MenuJournal.putRecord(stored));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Sets the image of several items with a single append to the menu journal. Prices and stock are left as
+     * they are; in particular the stock counters are not touched, so sales made meanwhile are kept.
+     * @param imageNamesByItemName New image file name, by item name (case-insensitive). Every item of that
+     *                             name gets the image, whichever category it is in.
+     * @return The names of the items whose image changed.
+     * @throws IOException if the change could not be recorded; the in-memory menu is left unchanged.
+     */
+    public static List<String> setImageNames(Map<String, String> imageNamesByItemName) throws IOException {
+        Map<String, String> imageNamesByKey = new HashMap<>();
+        imageNamesByItemName.forEach((itemName, imageName) -> imageNamesByKey.put(key(itemName), imageName));
+        return execute((records, undo) -> {
+            loadForWrite();
+            List<String> changedItemNames = new ArrayList<>();
+            for (CategoryEntry category : categories) {
+                for (Map.Entry<String, MenuItem> entry : category.itemsByKey.entrySet()) {
+                    MenuItem item = entry.getValue();
+                    String imageName = imageNamesByKey.get(entry.getKey());
+                    if (imageName == null || imageName.equals(item.getImageName())) continue;
+                    MenuItem updated = item.withImageName(imageName);
+                    // The record carries the current on-hand stock, so replaying it does not bring back sold stock.
+                    if (updated.hasLimitedStock()) updated = updated.withQuantity(StockLedger.counter(itemId(category, item.getName())).onHand());
+                    entry.setValue(updated);
+                    undo.add(() -> category.itemsByKey.put(entry.getKey(), item));
+                    records.add(MenuJournal.putRecord(updated));
+                    changedItemNames.add(item.getName());
+                }
+            }
+            return changedItemNames;
+        });
+    }
+
+    /**
+     * Sets the stock quantity of an item.
+     * @param quantity New stock quantity, or null for unlimited stock.
+     * @return false if there is no such item in that category.
+     * @throws IOException if the change could not be recorded; the in-memory menu is left unchanged.
+     */
+    public static boolean setQuantity(String categoryName, String itemName, Integer quantity) throws IOException {
+        return execute((records, undo) -> {
+            loadForWrite();
+            CategoryEntry category = categoriesByKey.get(key(categoryName));
+            MenuItem item = category == null ? null : category.itemsByKey.get(key(itemName));
+            if (item == null) return false;
+            MenuItem updated = item.withQuantity(quantity);
+            putItem(category, updated, undo);
+            records.add(MenuJournal.putRecord(updated));
+            return true;
+        });
+    }
+
+    /**
+     * Removes an item from the menu. A category left without items stays in the file, as before.
+     * @return false if there is no such item in that category.
+     * @throws IOException if the change could not be recorded; the in-memory menu is left unchanged.
+     */
+    public static boolean removeItem(String categoryName, String itemName) throws IOException {
+        return execute((records, undo) -> {
+            loadForWrite();
+            CategoryEntry category = categoriesByKey.get(key(categoryName));
+            MenuItem item = category == null ? null : category.itemsByKey.get(key(itemName));
+            if (item == null) return false;
+            deleteItem(category, key(itemName), undo);
+            records.add(MenuJournal.removeRecord(category.name, item.getName()));
+            return true;
+        });
+    }
+
+    /**
+     * Journals the stock levels changed through the {@link StockLedger}, one record per item. Does nothing if there are none.
+     * @throws IOException if the records could not be written; the changes stay pending for the next flush.
+     */
+    public static void flush() throws IOException {
+        execute(false, (records, undo) -> {
+            List<String> itemIds = StockLedger.takeDirtyItems();
+            if (itemIds.isEmpty() || menuBase == null) return null;
+            undo.add(() -> StockLedger.markDirty(itemIds));
+            for (String itemId : itemIds) {
+                int separator = itemId.indexOf('\u0000');
+                CategoryEntry category = categoriesByKey.get(itemId.substring(0, separator));
+                MenuItem item = category == null ? null : category.itemsByKey.get(itemId.substring(separator + 1));
+                // Items removed or made unlimited since the sale have nothing left to record.
+                if (item == null || !item.hasLimitedStock()) continue;
+                int onHand = StockLedger.counter(itemId).onHand();
+                records.add(MenuJournal.stockRecord(category.name, item.getName(), onHand));
+                recordQuantity(category, item, onHand, undo);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Rewrites 'menu_items.json' with every journaled change and deletes the journal, so the next start
+     * reads one file. Errors are logged; the journal is kept until a compaction succeeds.
+     */
+    public static synchronized void compact() {
+        if (menuBase == null || journalRecordCount == 0 && !Files.exists(loadedJournalPath)) return;
+        try {
+            writeMenu(loadedPath);
+            // Should the delete not happen, the journal no longer matches the rewritten file and is discarded on load.
+            MenuJournal.clear(loadedJournalPath);
+            journalRecordCount = 0;
+            journalSize = 0;
+        } catch (IOException e) {
+            System.err.println("Error compacting the menu journal: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Registers a listener that is told on the JavaFX Application Thread what changed after each change to the menu.
+     * The change is measured from the last snapshot delivered to any listener, so a listener registered
+     * late may be told about items it already shows; applying a change should not depend on the items' previous state.
+     */
+    public static synchronized void addListener(Consumer<MenuChange> listener) {
+        if (deliveredSnapshot == null) deliveredSnapshot = currentSnapshot();
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Consumer<MenuChange> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Called by the {@link StockLedger} after an available quantity changed. Listeners get one new
+     * snapshot for any number of changes made before the JavaFX Application Thread gets to it.
+     */
+    static void stockChanged() {
+        if (listeners.isEmpty() || !stockRefreshPending.compareAndSet(false, true)) return;
+        Platform.runLater(() -> {
+            stockRefreshPending.set(false);
+            deliver(getSnapshot());
+        });
+    }
+
+    /**
+     * Loads the menu before a change. A missing file is not an error here; an empty one is created for the
+     * journal to apply to, and any journal left from a previous file is dropped.
+     */
+    private static void loadForWrite() throws IOException {
+        Path path = menuPath();
+        if (loadedPath != null && loadedPath.equals(path) && menuBase != null) return;
+        clearMenu();
+        loadedPath = path;
+        loadedJournalPath = MenuJournal.getJournalPath();
+        loadedCachePath = MenuSnapshotCache.getCachePath();
+        snapshot = null;
+        if (Files.exists(path)) {
+            try {
+                readMenu(path);
+            } catch (IOException e) {
+                clearMenu();
+                menuBase = null;
+                throw e;
+            }
+        } else {
+            writeMenu(path);
+            MenuJournal.clear(loadedJournalPath);
+            journalRecordCount = 0;
+            journalSize = 0;
+        }
+        StockLedger.retain(trackedItemIds());
+    }
+
+    /**
+     * Reads the menu file, from the cache if it is up to date, then replays the journal on top.
+     */
+    private static void readMenu(Path path) throws IOException {
+        if (!Files.exists(path)) throw new IOException("Menu file not found: " + path);
+        menuBase = MenuJournal.baseRecord(path);
+        journalRecordCount = 0;
+        List<MenuCategory> fileCategories = MenuSnapshotCache.read(loadedCachePath, menuBase);
+        if (fileCategories == null) {
+            fileCategories = parseMenu(path);
+            MenuSnapshotCache.write(loadedCachePath, menuBase, fileCategories);
+        }
+        for (MenuCategory fileCategory : fileCategories) {
+            // A category listed twice in the file is merged into its first occurrence.
+            if (categoriesByKey.containsKey(key(fileCategory.getName()))) {
+                System.err.println("Menu category '" + fileCategory.getName() + "' is listed more than once in " + path
+                        + "; merging its items into the first one.");
+            }
+            CategoryEntry category = categoryFor(fileCategory.getName(), null);
+            for (MenuItem item : fileCategory.getItems()) {
+                // Only the first of several same-named items in a category is kept; it is the one every lookup found.
+                if (category.itemsByKey.containsKey(key(item.getName()))) {
+                    System.err.println("Dropping duplicate menu item '" + item.getName() + "' in category '" + category.name
+                            + "' of " + path + "; the first one is kept.");
+                    continue;
+                }
+                putItem(category, item.withCategory(category.name), null);
+            }
+        }
+        journalRecordCount = MenuJournal.replay(loadedJournalPath, menuBase, MenuRepository::applyRecord);
+        journalSize = MenuJournal.size(loadedJournalPath);
+        if (journalRecordCount > 0) System.out.println("Replayed " + journalRecordCount + " menu journal record(s).");
+    }
+
+    /**
+     * @return The categories and items exactly as listed in the menu file.
+     */
+    private static List<MenuCategory> parseMenu(Path path) throws IOException {
+        List<MenuCategory> fileCategories = new ArrayList<>();
+        try {
+            JSONObject rootJson = Files.size(path) == 0 ? new JSONObject() : new JSONObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            JSONArray categoriesArray = rootJson.optJSONArray("categories");
+            if (categoriesArray == null) return fileCategories;
+            for (int i = 0; i < categoriesArray.length(); i++) {
+                JSONObject categoryObj = categoriesArray.getJSONObject(i);
+                String categoryName = categoryObj.getString("name");
+                JSONArray itemsArray = categoryObj.getJSONArray("items");
+                List<MenuItem> items = new ArrayList<>(itemsArray.length());
+                for (int j = 0; j < itemsArray.length(); j++) {
+                    JSONObject itemObj = itemsArray.getJSONObject(j);
+                    Integer quantity = itemObj.has("quantity") ? itemObj.getInt("quantity") : null;
+                    items.add(new MenuItem(categoryName, itemObj.getString("name"), itemObj.optString("imageName", ""), itemObj.getInt("price"), quantity));
+                }
+                fileCategories.add(new MenuCategory(categoryName, items));
+            }
+        } catch (JSONException e) {
+            throw new IOException("Could not parse menu file: " + e.getMessage(), e);
+        }
+        return fileCategories;
+    }
+
+    /**
+     * Applies one journal record to the in-memory menu. Records are absolute, so applying one twice is harmless.
+     */
+    private static void applyRecord(JSONObject record) {
+        try {
+            String type = record.getString("type");
+            CategoryEntry category = categoriesByKey.get(key(record.getString("category")));
+            String itemKey = key(record.getString("name"));
+            MenuItem existing = category == null ? null : category.itemsByKey.get(itemKey);
+            if (MenuJournal.RECORD_TYPE_PUT.equals(type)) {
+                if (category == null) category = categoryFor(record.getString("category"), null);
+                Integer quantity = record.has("quantity") ? record.getInt("quantity") : null;
+                String itemName = existing != null ? existing.getName() : record.getString("name");
+                putItem(category, new MenuItem(category.name, itemName, record.optString("imageName", ""), record.getInt("price"), quantity), null);
+            } else if (MenuJournal.RECORD_TYPE_REMOVE.equals(type)) {
+                if (existing != null) deleteItem(category, itemKey, null);
+            } else if (MenuJournal.RECORD_TYPE_STOCK.equals(type)) {
+                if (existing != null && existing.hasLimitedStock()) {
+                    int quantity = record.getInt("quantity");
+                    category.itemsByKey.put(itemKey, existing.withQuantity(quantity));
+                    StockLedger.track(itemId(category, itemKey), quantity);
+                }
+            } else {
+                System.err.println("Skipping menu journal record of unknown type: " + type);
+            }
+        } catch (JSONException e) {
+            System.err.println("Skipping malformed menu journal record: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the whole menu to a temporary file, forces it to disk and moves it over 'menu_items.json',
+     * so neither a failed write nor a power cut leaves a truncated menu.
+     */
+    private static void writeMenu(Path path) throws IOException {
+        JSONArray categoriesArray = new JSONArray();
+        // What the file holds, for the cache.
+        List<MenuCategory> fileCategories = new ArrayList<>(categories.size());
+        for (CategoryEntry category : categories) {
+            JSONArray itemsArray = new JSONArray();
+            List<MenuItem> fileItems = new ArrayList<>(category.itemsByKey.size());
+            for (MenuItem item : category.itemsByKey.values()) {
+                if (item.hasLimitedStock()) item = item.withQuantity(StockLedger.counter(itemId(category, item.getName())).onHand());
+                JSONObject itemObj = new JSONObject();
+                itemObj.put("name", item.getName());
+                itemObj.put("imageName", item.getImageName());
+                itemObj.put("price", item.getPrice());
+                if (item.hasLimitedStock()) itemObj.put("quantity", item.getQuantity().intValue());
+                itemsArray.put(itemObj);
+                fileItems.add(item);
+            }
+            JSONObject categoryObj = new JSONObject();
+            categoryObj.put("name", category.name);
+            categoryObj.put("items", itemsArray);
+            categoriesArray.put(categoryObj);
+            fileCategories.add(new MenuCategory(category.name, fileItems));
+        }
+        JSONObject rootJson = new JSONObject();
+        rootJson.put("categories", categoriesArray);
+
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(rootJson.toString(4).getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        menuBase = MenuJournal.baseRecord(path);
+        MenuSnapshotCache.write(loadedCachePath, menuBase, fileCategories);
+        for (int i = 0; i < categories.size(); i++) {
+            for (MenuItem item : fileCategories.get(i).getItems()) {
+                categories.get(i).itemsByKey.put(key(item.getName()), item);
+            }
+        }
+    }
+
+    private static <T> T execute(MenuCommand<T> command) throws IOException {
+        return execute(true, command);
+    }
+
+    /**
+     * Runs a change on the writer thread and waits for it to be journaled. Must not be called while holding
+     * this class's lock, which the writer thread needs.
+     * @param changesMenu False for changes listeners need not hear about, such as stock already shown.
+     * @return What the command returned.
+     * @throws IOException if the command failed or its records could not be journaled; its changes are undone.
+     */
+    private static <T> T execute(boolean changesMenu, MenuCommand<T> command) throws IOException {
+        PendingCommand<T> pending = new PendingCommand<>(command, changesMenu);
+        if (Thread.currentThread() == ensureWriterStarted()) {
+            writeBatch(List.of(pending));
+        } else {
+            commandQueue.add(pending);
+        }
+        try {
+            return pending.future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        } finally {
+            // Set by the writer for a caller on the JavaFX Application Thread, whose listeners hear of it before it returns.
+            notifyListeners(pending.changed);
+        }
+    }
+
+    private static Thread ensureWriterStarted() {
+        // Not the class lock, which the writer holds while it writes a batch.
+        synchronized (commandQueue) {
+            if (writerThread == null) {
+                writerThread = new Thread(MenuRepository::runWriter, "MenuRepository-Writer");
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+            return writerThread;
+        }
+    }
+
+    private static void runWriter() {
+        List<PendingCommand<?>> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(commandQueue.take());
+            } catch (InterruptedException e) {
+                // Nothing interrupts this thread on purpose; carry on.
+                continue;
+            }
+            // Everything queued while the last batch was being written shares this one.
+            commandQueue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            try {
+                writeBatch(batch);
+            } catch (Throwable t) {
+                // Keep the thread alive for later changes; callers still waiting get the error.
+                System.err.println("Error writing menu changes: " + t);
+                t.printStackTrace();
+                for (PendingCommand<?> pending : batch) pending.future.completeExceptionally(t);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Applies a batch of commands to the in-memory menu in the order they were queued and journals all of
+     * their records with one append. A command that throws is undone on its own; if the append fails, every
+     * command in the batch is undone and fails with that error. Listeners are notified through
+     * {@link Platform#runLater(Runnable)}, unless a caller on the JavaFX Application Thread is waiting on the batch;
+     * that caller then notifies them itself.
+     */
+    private static void writeBatch(List<PendingCommand<?>> batch) {
+        MenuSnapshot changed = null;
+        List<Object> results = new ArrayList<>(batch.size());
+        List<Throwable> failures = new ArrayList<>(batch.size());
+        synchronized (MenuRepository.class) {
+            List<JSONObject> records = new ArrayList<>();
+            List<Runnable> undo = new ArrayList<>();
+            boolean menuChanged = false;
+            for (PendingCommand<?> pending : batch) {
+                int recordCount = records.size();
+                int undoCount = undo.size();
+                try {
+                    results.add(pending.command.apply(records, undo));
+                    failures.add(null);
+                    menuChanged |= pending.changesMenu && records.size() > recordCount;
+                } catch (Throwable t) {
+                    for (int i = undo.size() - 1; i >= undoCount; i--) {
+                        undo.remove(i).run();
+                    }
+                    records.subList(recordCount, records.size()).clear();
+                    results.add(null);
+                    failures.add(t);
+                }
+            }
+            if (!records.isEmpty()) {
+                try {
+                    saveOrRollback(records, undo);
+                } catch (IOException e) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).future.completeExceptionally(failures.get(i) != null ? failures.get(i) : e);
+                    }
+                    return;
+                }
+            }
+            if (menuChanged) changed = changed();
+        }
+        PendingCommand<?> fxCaller = null;
+        for (PendingCommand<?> pending : batch) {
+            if (pending.fromFxThread) fxCaller = pending;
+        }
+        // Set before any future completes, so the caller sees it once it wakes up.
+        if (fxCaller != null) fxCaller.changed = changed;
+        else notifyListeners(changed);
+        for (int i = 0; i < batch.size(); i++) {
+            if (failures.get(i) != null) batch.get(i).future.completeExceptionally(failures.get(i));
+            else batch.get(i).complete(results.get(i));
+        }
+    }
+
+    private static void saveOrRollback(List<JSONObject> records, List<Runnable> undo) throws IOException {
+        try {
+            MenuJournal.append(loadedJournalPath, menuBase, records);
+            journalSize = MenuJournal.size(loadedJournalPath);
+        } catch (IOException | RuntimeException e) {
+            for (int i = undo.size() - 1; i >= 0; i--) {
+                undo.get(i).run();
+            }
+            throw e;
+        }
+        journalRecordCount += records.size();
+        compactIfDue();
+    }
+
+    private static void compactIfDue() {
+        if (journalRecordCount >= COMPACT_AFTER_RECORDS) compact();
+    }
+
+    /**
+     * @return For each limited-stock item whose on-hand quantity differs from the one last read or journaled,
+     *         the difference, i.e. the stock sold (or the restock undone) that is not on disk yet.
+     */
+    private static Map<String, Integer> unjournaledStock() {
+        Map<String, Integer> differences = new HashMap<>();
+        for (CategoryEntry category : categories) {
+            for (MenuItem item : category.itemsByKey.values()) {
+                if (!item.hasLimitedStock()) continue;
+                String itemId = itemId(category, item.getName());
+                StockLedger.Counter counter = StockLedger.counter(itemId);
+                if (counter != null && counter.onHand() != item.getQuantity()) differences.put(itemId, counter.onHand() - item.getQuantity());
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Applies stock differences taken before a reload to the re-read quantities and journals the result
+     * against the menu file just read. If the journal cannot be written, the items stay pending for the next flush.
+     */
+    private static void carryOverStock(Map<String, Integer> differences) {
+        if (differences.isEmpty()) return;
+        List<JSONObject> records = new ArrayList<>();
+        List<Runnable> recorded = new ArrayList<>();
+        for (Map.Entry<String, Integer> difference : differences.entrySet()) {
+            String itemId = difference.getKey();
+            int separator = itemId.indexOf('\u0000');
+            CategoryEntry category = categoriesByKey.get(itemId.substring(0, separator));
+            MenuItem item = category == null ? null : category.itemsByKey.get(itemId.substring(separator + 1));
+            StockLedger.Counter counter = StockLedger.counter(itemId);
+            // Items removed or made unlimited by the outside change have nothing left to record.
+            if (item == null || !item.hasLimitedStock() || counter == null) continue;
+            counter.addOnHand(difference.getValue());
+            int onHand = counter.onHand();
+            records.add(MenuJournal.stockRecord(category.name, item.getName(), onHand));
+            recorded.add(() -> recordQuantity(category, item, onHand, null));
+        }
+        if (records.isEmpty()) return;
+        try {
+            saveOrRollback(records, List.of());
+            recorded.forEach(Runnable::run);
+            System.out.println("Carried " + records.size() + " unsaved stock level(s) over the menu reload.");
+        } catch (IOException e) {
+            System.err.println("Could not journal stock levels after reloading the menu, will retry: " + e.getMessage());
+            StockLedger.markDirty(differences.keySet());
+        }
+    }
+
+    /**
+     * Notes the quantity now on disk for an item, which {@link #unjournaledStock()} measures sales from.
+     */
+    private static void recordQuantity(CategoryEntry category, MenuItem item, int onHand, List<Runnable> undo) {
+        String itemKey = key(item.getName());
+        category.itemsByKey.put(itemKey, item.withQuantity(onHand));
+        if (undo != null) undo.add(() -> category.itemsByKey.put(itemKey, item));
+    }
+
+    private static void clearMenu() {
+        categories.clear();
+        categoriesByKey.clear();
+        categoriesByItemKey.clear();
+        StockLedger.clearNames();
+    }
+
+    /**
+     * @return The category with that name (case-insensitive), appended to the menu if it does not exist yet.
+     */
+    private static CategoryEntry categoryFor(String categoryName, List<Runnable> undo) {
+        CategoryEntry category = categoriesByKey.get(key(categoryName));
+        if (category != null) return category;
+        CategoryEntry created = new CategoryEntry(categoryName, categories.size());
+        categories.add(created);
+        categoriesByKey.put(key(categoryName), created);
+        if (undo != null) undo.add(() -> {
+            categories.remove(categories.size() - 1);
+            categoriesByKey.remove(key(categoryName));
+        });
+        return created;
+    }
+
+    /**
+     * Adds an item to a category, or replaces the item of the same name in place, keeping the indexes
+     * and the item's stock counter current.
+     */
+    private static void putItem(CategoryEntry category, MenuItem item, List<Runnable> undo) {
+        String itemKey = key(item.getName());
+        String itemId = itemId(category, item.getName());
+        StockLedger.Counter previousCounter = StockLedger.counter(itemId);
+        int previousOnHand = previousCounter == null ? 0 : previousCounter.onHand();
+        MenuItem previous = category.itemsByKey.put(itemKey, item);
+        if (previous == null) indexItem(category, itemKey);
+        if (item.hasLimitedStock()) StockLedger.track(itemId, item.getQuantity());
+        else if (previousCounter != null) StockLedger.untrack(itemId);
+        bindName(itemKey);
+        if (undo != null) undo.add(() -> {
+            if (previous != null) {
+                category.itemsByKey.put(itemKey, previous);
+            } else {
+                category.itemsByKey.remove(itemKey);
+                unindexItem(category, itemKey);
+            }
+            if (previousCounter == null) {
+                StockLedger.untrack(itemId);
+            } else if (item.hasLimitedStock()) {
+                // Undo as a difference, so stock committed by orders in the meantime is kept.
+                previousCounter.addOnHand(previousOnHand - item.getQuantity());
+            } else {
+                StockLedger.restore(itemId, previousCounter);
+            }
+            bindName(itemKey);
+        });
+    }
+
+    private static void deleteItem(CategoryEntry category, String itemKey, List<Runnable> undo) {
+        // Restoring the item must also restore its position, so the undo puts back the whole category.
+        Map<String, MenuItem> before = new LinkedHashMap<>(category.itemsByKey);
+        String itemId = itemId(category, itemKey);
+        StockLedger.Counter counter = StockLedger.counter(itemId);
+        category.itemsByKey.remove(itemKey);
+        unindexItem(category, itemKey);
+        if (counter != null) StockLedger.untrack(itemId);
+        bindName(itemKey);
+        if (undo != null) undo.add(() -> {
+            category.itemsByKey.clear();
+            category.itemsByKey.putAll(before);
+            indexItem(category, itemKey);
+            if (counter != null) StockLedger.restore(itemId, counter);
+            bindName(itemKey);
+        });
+    }
+
+    /**
+     * Records that a category holds an item of that name. The categories are kept in menu order, so
+     * the first one is the item a lookup by name alone finds.
+     */
+    private static void indexItem(CategoryEntry category, String itemKey) {
+        List<CategoryEntry> holders = categoriesByItemKey.computeIfAbsent(itemKey, k -> new ArrayList<>(1));
+        int position = holders.size();
+        while (position > 0 && holders.get(position - 1).ordinal > category.ordinal) position--;
+        holders.add(position, category);
+    }
+
+    private static void unindexItem(CategoryEntry category, String itemKey) {
+        List<CategoryEntry> holders = categoriesByItemKey.get(itemKey);
+        if (holders == null) return;
+        holders.remove(category);
+        if (holders.isEmpty()) categoriesByItemKey.remove(itemKey);
+    }
+
+    /**
+     * Points order lines for an item name at the stock counter of the first item with that name.
+     */
+    private static void bindName(String itemKey) {
+        List<CategoryEntry> holders = categoriesByItemKey.get(itemKey);
+        StockLedger.bindName(itemKey, holders == null ? null : itemId(holders.get(0), itemKey));
+    }
+
+    private static Set<String> trackedItemIds() {
+        Set<String> itemIds = new HashSet<>();
+        for (CategoryEntry category : categories) {
+            for (MenuItem item : category.itemsByKey.values()) {
+                if (item.hasLimitedStock()) itemIds.add(itemId(category, item.getName()));
+            }
+        }
+        return itemIds;
+    }
+
+    static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static String itemId(CategoryEntry category, String itemName) {
+        return key(category.name) + '\u0000' + key(itemName);
+    }
+
+    /**
+     * Drops the cached snapshot after a change and builds the new one if anybody is listening.
+     */
+    private static MenuSnapshot changed() {
+        snapshot = null;
+        if (listeners.isEmpty()) return null;
+        latestChanged = currentSnapshot();
+        return latestChanged;
+    }
+
+    /**
+     * @return The cached snapshot, rebuilt if the menu or any available quantity changed since it was built.
+     */
+    private static MenuSnapshot currentSnapshot() {
+        long stockVersion = StockLedger.getVersion();
+        if (snapshot == null || snapshotStockVersion != stockVersion) {
+            snapshot = buildSnapshot();
+            snapshotStockVersion = stockVersion;
+        }
+        return snapshot;
+    }
+
+    private static MenuSnapshot buildSnapshot() {
+        List<MenuCategory> menuCategories = new ArrayList<>();
+        for (CategoryEntry category : categories) {
+            List<MenuItem> items = new ArrayList<>(category.itemsByKey.size());
+            for (MenuItem item : category.itemsByKey.values()) {
+                items.add(item.hasLimitedStock() ? item.withQuantity(StockLedger.counter(itemId(category, item.getName())).available()) : item);
+            }
+            menuCategories.add(new MenuCategory(category.name, items));
+        }
+        return new MenuSnapshot(menuCategories);
+    }
+
+    private static void notifyListeners(MenuSnapshot changed) {
+        if (changed == null || listeners.isEmpty()) return;
+        if (Platform.isFxApplicationThread()) {
+            deliver(changed);
+        } else {
+            Platform.runLater(() -> {
+                // A newer snapshot may already have been delivered directly to a caller on this thread.
+                if (changed == latestChanged) deliver(changed);
+            });
+        }
+    }
+
+    private static void deliver(MenuSnapshot changed) {
+        MenuChange change = MenuChange.between(deliveredSnapshot == null ? MenuSnapshot.EMPTY : deliveredSnapshot, changed);
+        deliveredSnapshot = changed;
+        if (change.isEmpty()) return;
+        for (Consumer<MenuChange> listener : listeners) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                System.err.println("Error in menu listener: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static Path menuPath() {
+        return Paths.get(ConfigManager.getMenuItemsJsonPath());
+    }
+
+    /**
+     * Outcome of {@link #upsertItems(List)}.
+     */
+    public static final class UpsertResult {
+        private final List<String> addedItemNames = new ArrayList<>();
+        private final List<String> updatedItemNames = new ArrayList<>();
+
+        public List<String> getAddedItemNames() {
+            return Collections.unmodifiableList(addedItemNames);
+        }
+
+        public List<String> getUpdatedItemNames() {
+            return Collections.unmodifiableList(updatedItemNames);
+        }
+    }
+
+    /**
+     * A change to the menu, run on the writer thread while holding this class's lock.
+     */
+    private interface MenuCommand<T> {
+        /**
+         * Changes the in-memory menu.
+         * @param records Receives the journal records of the change.
+         * @param undo Receives the steps that take the change back, in the order they were made.
+         */
+        T apply(List<JSONObject> records, List<Runnable> undo) throws IOException;
+    }
+
+    private static final class PendingCommand<T> {
+        private final MenuCommand<T> command;
+        private final boolean changesMenu;
+        private final boolean fromFxThread = Platform.isFxApplicationThread();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        // The snapshot its caller delivers to listeners, when it waits on the JavaFX Application Thread.
+        private MenuSnapshot changed;
+
+        PendingCommand(MenuCommand<T> command, boolean changesMenu) {
+            this.command = command;
+            this.changesMenu = changesMenu;
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Object result) {
+            future.complete((T) result);
+        }
+    }
+
+    private static final class CategoryEntry {
+        private final String name;
+        private final int ordinal;
+        // Items in menu order, by lower-case name.
+        private final LinkedHashMap<String, MenuItem> itemsByKey = new LinkedHashMap<>();
+
+        CategoryEntry(String name, int ordinal) {
+            this.name = name;
+            this.ordinal = ordinal;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.model.MenuItem;
+import com.ssicecreamsshop.model.MenuSnapshot;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search index over the items of one menu snapshot, for the order screen's search box.
+ * An item matches when its lower-case name or its price contains the query, as before; but instead of testing
+ * every item, every substring of up to {@value #MAX_GRAM} characters of each name is indexed, so a query is
+ * only checked against the items holding its rarest such substring. Prices are indexed by their text, of which
+ * a menu has few distinct values. A query that extends the previous one (the usual case while typing) is
+ * checked against the previous matches only.
+ * Not thread-safe; the order screen builds and uses it on the JavaFX Application Thread.
+ */
+public final class MenuSearchIndex {
+
+    private static final int MAX_GRAM = 3;
+
+    private final List<MenuItem> items;
+    private final String[] names;
+    private final String[] prices;
+    private final Map<String, int[]> itemsByGram;
+    private final Map<String, int[]> itemsByPrice;
+    private String lastQuery;
+    private BitSet lastMatches;
+
+    public MenuSearchIndex(MenuSnapshot menu) {
+        items = menu.getAllItems();
+        names = new String[items.size()];
+        prices = new String[items.size()];
+        itemsByGram = new HashMap<>();
+        itemsByPrice = new HashMap<>();
+        Map<String, List<Integer>> gramPostings = new HashMap<>();
+        Map<String, List<Integer>> pricePostings = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            MenuItem item = items.get(i);
+            names[i] = normalize(item.getName());
+            prices[i] = String.valueOf(item.getPrice());
+            Set<String> grams = new HashSet<>();
+            for (int start = 0; start < names[i].length(); start++) {
+                for (int end = start + 1; end <= Math.min(start + MAX_GRAM, names[i].length()); end++) {
+                    grams.add(names[i].substring(start, end));
+                }
+            }
+            for (String gram : grams) {
+                gramPostings.computeIfAbsent(gram, k -> new ArrayList<>()).add(i);
+            }
+            pricePostings.computeIfAbsent(prices[i], k -> new ArrayList<>()).add(i);
+        }
+        gramPostings.forEach((gram, postings) -> itemsByGram.put(gram, toArray(postings)));
+        pricePostings.forEach((price, postings) -> itemsByPrice.put(price, toArray(postings)));
+    }
+
+    private MenuSearchIndex(MenuSearchIndex index, List<MenuItem> items) {
+        this.items = items;
+        this.names = index.names;
+        this.prices = index.prices;
+        this.itemsByGram = index.itemsByGram;
+        this.itemsByPrice = index.itemsByPrice;
+        this.lastQuery = index.lastQuery;
+        this.lastMatches = index.lastMatches;
+    }
+
+    /**
+     * @return An index of this menu. If only stock levels or images changed since this index was built,
+     *         which is what a sale does, the index is reused with the new items instead of being rebuilt.
+     */
+    public MenuSearchIndex forMenu(MenuSnapshot menu) {
+        List<MenuItem> menuItems = menu.getAllItems();
+        if (menuItems.size() != items.size()) return new MenuSearchIndex(menu);
+        for (int i = 0; i < menuItems.size(); i++) {
+            MenuItem item = menuItems.get(i);
+            MenuItem indexed = items.get(i);
+            if (item.getPrice() != indexed.getPrice() || !item.getName().equals(indexed.getName())
+                    || !item.getCategory().equals(indexed.getCategory())) return new MenuSearchIndex(menu);
+        }
+        return new MenuSearchIndex(this, menuItems);
+    }
+
+    /**
+     * @param query Search text; case and surrounding blanks are ignored.
+     * @return The matching items in menu order; every item if the query is blank.
+     */
+    public List<MenuItem> search(String query) {
+        String normalized = query == null ? "" : normalize(query).trim();
+        if (normalized.isEmpty()) return items;
+        BitSet matches;
+        if (lastQuery != null && normalized.contains(lastQuery)) {
+            // Anything matching the longer query also matched the one it extends.
+            matches = new BitSet(items.size());
+            for (int i = lastMatches.nextSetBit(0); i >= 0; i = lastMatches.nextSetBit(i + 1)) {
+                if (names[i].contains(normalized) || prices[i].contains(normalized)) matches.set(i);
+            }
+        } else {
+            matches = searchIndex(normalized);
+        }
+        lastQuery = normalized;
+        lastMatches = matches;
+        List<MenuItem> result = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(items.get(i));
+        }
+        return result;
+    }
+
+    private BitSet searchIndex(String normalized) {
+        BitSet matches = new BitSet(items.size());
+        if (normalized.length() <= MAX_GRAM) {
+            // The query is itself an indexed substring, so its postings are exactly the matching names.
+            for (int i : itemsByGram.getOrDefault(normalized, new int[0])) matches.set(i);
+        } else {
+            int[] candidates = null;
+            for (int start = 0; start + MAX_GRAM <= normalized.length(); start++) {
+                int[] postings = itemsByGram.getOrDefault(normalized.substring(start, start + MAX_GRAM), new int[0]);
+                if (candidates == null || postings.length < candidates.length) candidates = postings;
+                if (candidates.length == 0) break;
+            }
+            for (int i : candidates) {
+                if (names[i].contains(normalized)) matches.set(i);
+            }
+        }
+        for (Map.Entry<String, int[]> price : itemsByPrice.entrySet()) {
+            if (!price.getKey().contains(normalized)) continue;
+            for (int i : price.getValue()) matches.set(i);
+        }
+        return matches;
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static int[] toArray(List<Integer> postings) {
+        int[] array = new int[postings.size()];
+        for (int i = 0; i < array.length; i++) array[i] = postings.get(i);
+        return array;
+    }
+}
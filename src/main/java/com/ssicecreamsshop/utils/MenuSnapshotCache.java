@@ -0,0 +1,106 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuCategory;
+import com.ssicecreamsshop.model.MenuItem;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary copy of the menu as parsed from 'menu_items.json', so the menu can be loaded at startup with a
+ * single read and no JSON parsing. The cache starts with the size and modification time of the menu file
+ * it was made from, and is ignored once the file no longer matches them; {@link MenuRepository} then parses
+ * the JSON and writes a fresh cache. It holds the menu file's contents only: journaled changes are replayed
+ * on top as usual. Losing or corrupting the cache only costs one JSON parse.
+ */
+public class MenuSnapshotCache {
+
+    private static final int MAGIC = 0x53534D43; // "SSMC"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * @return The cache file next to 'menu_items.json'. It may not exist.
+     */
+    public static Path getCachePath() {
+        return Paths.get(ConfigManager.getMenuCachePath());
+    }
+
+    /**
+     * @param menuBase The {@link MenuJournal#baseRecord(Path)} of the menu file.
+     * @return The categories of the menu file as last parsed, or null if there is no usable cache for this version of it.
+     */
+    static List<MenuCategory> read(Path cachePath, JSONObject menuBase) {
+        if (menuBase == null || !Files.exists(cachePath)) return null;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cachePath)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            if (in.readLong() != menuBase.getLong("size") || in.readLong() != menuBase.getLong("modified")) return null;
+            int categoryCount = in.readInt();
+            List<MenuCategory> categories = new ArrayList<>();
+            for (int i = 0; i < categoryCount; i++) {
+                String categoryName = in.readUTF();
+                int itemCount = in.readInt();
+                List<MenuItem> items = new ArrayList<>();
+                for (int j = 0; j < itemCount; j++) {
+                    String name = in.readUTF();
+                    String imageName = in.readUTF();
+                    int price = in.readInt();
+                    Integer quantity = in.readBoolean() ? in.readInt() : null;
+                    items.add(new MenuItem(categoryName, name, imageName, price, quantity));
+                }
+                categories.add(new MenuCategory(categoryName, items));
+            }
+            return categories;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable menu cache " + cachePath + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the cache with the contents of the menu file. Errors are logged; the next load parses the JSON instead.
+     * @param menuBase The {@link MenuJournal#baseRecord(Path)} of the menu file holding these categories.
+     */
+    static void write(Path cachePath, JSONObject menuBase, List<MenuCategory> categories) {
+        if (menuBase == null) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Path tempPath = cachePath.resolveSibling(cachePath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(menuBase.getLong("size"));
+            out.writeLong(menuBase.getLong("modified"));
+            out.writeInt(categories.size());
+            for (MenuCategory category : categories) {
+                out.writeUTF(category.getName());
+                out.writeInt(category.getItems().size());
+                for (MenuItem item : category.getItems()) {
+                    out.writeUTF(item.getName());
+                    out.writeUTF(item.getImageName());
+                    out.writeInt(item.getPrice());
+                    out.writeBoolean(item.hasLimitedStock());
+                    if (item.hasLimitedStock()) out.writeInt(item.getQuantity());
+                }
+            }
+            out.flush();
+            Files.write(tempPath, bytes.toByteArray());
+            try {
+                Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write menu cache " + cachePath + ": " + e.getMessage());
+        }
+    }
+}
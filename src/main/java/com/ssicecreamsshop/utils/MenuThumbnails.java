@@ -0,0 +1,227 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.config.ConfigManager;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Small copies of the menu images, which are stored at camera resolution but drawn at no more than 110 pixels.
+ * A thumbnail of at most {@value #THUMBNAIL_SIZE} pixels per side is written to the '.thumbnails' folder
+ * in the background when an image is added to the menu, and any missing ones are generated at startup.
+ * A thumbnail older than its image is out of date and not used; the image itself is read instead until
+ * the thumbnail has been regenerated.
+ */
+public class MenuThumbnails {
+
+    /** Longest side of a thumbnail, in pixels: twice the largest size images are drawn at, for high-density screens. */
+    public static final int THUMBNAIL_SIZE = 220;
+
+    private static final String THUMBNAIL_SUFFIX = ".png";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long STALE_TEMP_FILE_MILLIS = 10 * 60 * 1000;
+    private static final List<String> IMAGE_SUFFIXES = List.of(".png", ".jpg", ".jpeg", ".gif", ".bmp");
+    // Each worker holds a full-size decoded image, which for a phone photo is tens of megabytes.
+    private static final int MAX_BACKFILL_THREADS = 4;
+
+    /**
+     * @param imageName File name in the images folder.
+     * @return The image's thumbnail, or null if it has none or it is older than the image.
+     */
+    public static Path getThumbnail(String imageName) {
+        if (imageName == null || imageName.isBlank()) return null;
+        Path thumbnailPath = thumbnailPath(imageName);
+        try {
+            FileTime thumbnailTime = Files.getLastModifiedTime(thumbnailPath);
+            FileTime imageTime = Files.getLastModifiedTime(Paths.get(ConfigManager.getImagePath(), imageName));
+            return thumbnailTime.compareTo(imageTime) >= 0 ? thumbnailPath : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the thumbnail of an image in the images folder, replacing any older one. Errors are logged.
+     * @param imageName File name in the images folder.
+     * @return True if the thumbnail was written.
+     */
+    public static boolean generate(String imageName) {
+        if (imageName == null || imageName.isBlank()) return false;
+        Path imagePath = Paths.get(ConfigManager.getImagePath(), imageName);
+        try {
+            BufferedImage image = ImageIO.read(imagePath.toFile());
+            if (image == null) {
+                System.err.println("Cannot make a thumbnail of " + imagePath + ": unsupported image format.");
+                return false;
+            }
+            write(imageName, image);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error making a thumbnail of " + imagePath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes the thumbnail of an image in the images folder on a background thread, since decoding a photo
+     * takes long enough to stall the screen. Until it is written, views read the image itself.
+     * @param imageName File name in the images folder.
+     */
+    public static void generateInBackground(String imageName) {
+        if (imageName == null || imageName.isBlank()) return;
+        Thread thread = new Thread(() -> generate(imageName), "MenuThumbnails-Generate");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Writes the thumbnail of an image already decoded by the caller, replacing any older one.
+     * @param imageName File name of the image in the images folder.
+     */
+    static void write(String imageName, BufferedImage image) throws IOException {
+        Path thumbnailPath = thumbnailPath(imageName);
+        Files.createDirectories(thumbnailPath.getParent());
+        Path tempPath = Files.createTempFile(thumbnailPath.getParent(), "thumbnail-", TEMP_SUFFIX);
+        try {
+            ImageIO.write(scaleDown(image), "png", tempPath.toFile());
+            try {
+                Files.move(tempPath, thumbnailPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(tempPath, thumbnailPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Generates, in the background, the thumbnails of every image in the images folder that has none or an
+     * out-of-date one, several at a time, and deletes thumbnails whose image is gone.
+     */
+    public static void backfill() {
+        Path imagesDir = Paths.get(ConfigManager.getImagePath());
+        Thread thread = new Thread(() -> backfill(imagesDir), "MenuThumbnails-Backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void backfill(Path imagesDir) {
+        long start = System.currentTimeMillis();
+        List<String> missing = new ArrayList<>();
+        try (Stream<Path> files = Files.list(imagesDir)) {
+            files.filter(Files::isRegularFile)
+                    .map(path -> path.getFileName().toString())
+                    .filter(MenuThumbnails::isImageName)
+                    .filter(name -> getThumbnail(name) == null)
+                    .forEach(missing::add);
+        } catch (IOException e) {
+            System.err.println("Error listing menu images for thumbnails: " + e.getMessage());
+            return;
+        }
+        deleteOrphans(imagesDir);
+        if (missing.isEmpty()) return;
+
+        int threads = Math.max(1, Math.min(MAX_BACKFILL_THREADS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "MenuThumbnails-Worker");
+            t.setDaemon(true);
+            return t;
+        });
+        int generated = 0;
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (String imageName : missing) tasks.add(() -> generate(imageName));
+            for (Future<Boolean> result : pool.invokeAll(tasks)) {
+                if (result.get()) generated++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error generating menu thumbnails: " + e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println("Generated " + generated + " of " + missing.size() + " missing menu thumbnails in "
+                + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    private static void deleteOrphans(Path imagesDir) {
+        Path thumbnailsDir = Paths.get(ConfigManager.getImageThumbnailPath());
+        if (!Files.isDirectory(thumbnailsDir)) return;
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_FILE_MILLIS;
+        try (Stream<Path> thumbnails = Files.list(thumbnailsDir)) {
+            for (Path thumbnail : (Iterable<Path>) thumbnails::iterator) {
+                String name = thumbnail.getFileName().toString();
+                boolean orphan;
+                if (name.endsWith(THUMBNAIL_SUFFIX)) {
+                    orphan = !Files.exists(imagesDir.resolve(name.substring(0, name.length() - THUMBNAIL_SUFFIX.length())));
+                } else {
+                    // A temporary file left behind by an interrupted write; a recent one may still be being written.
+                    orphan = name.endsWith(TEMP_SUFFIX) && isOlderThan(thumbnail, staleBefore);
+                }
+                if (orphan) Files.deleteIfExists(thumbnail);
+            }
+        } catch (IOException e) {
+            System.err.println("Error cleaning up menu thumbnails: " + e.getMessage());
+        }
+    }
+
+    private static boolean isOlderThan(Path path, long millis) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis() < millis;
+        } catch (IOException e) {
+            return false; // Already moved into place or removed by the write that created it.
+        }
+    }
+
+    /**
+     * Shrinks an image to fit {@link #THUMBNAIL_SIZE}, halving it step by step first, since a single bilinear
+     * pass from a large photo only samples a few of its pixels and looks grainy.
+     */
+    private static BufferedImage scaleDown(BufferedImage image) {
+        double scale = Math.min(1.0, (double) THUMBNAIL_SIZE / Math.max(image.getWidth(), image.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, width, height, null);
+            g.dispose();
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static Path thumbnailPath(String imageName) {
+        return Paths.get(ConfigManager.getImageThumbnailPath(), imageName + THUMBNAIL_SUFFIX);
+    }
+
+    static boolean isImageName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return IMAGE_SUFFIXES.stream().anyMatch(lower::endsWith);
+    }
+}
@@ -0,0 +1,510 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.model.Order;
+import com.ssicecreamsshop.model.OrderItem;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Compact, columnar copy of the order journal for reporting, kept in 'orders/columns'.
+ * Every order item is one row spread over five primitive column files (created time in local epoch seconds,
+ * order marker, item id, quantity and unit price) plus a dictionary of item names. Queries map the columns
+ * with {@link FileChannel#map} and scan them without building any {@link Order} or {@link OrderItem} objects.
+ * <p>
+ * The store is append-only and mirrors the journal: a voided order is appended again with negated quantities,
+ * and the order marker is +1 on the first row of an order, -1 on the first row of a void and 0 otherwise,
+ * so sums over any range come out right. It remembers which journal state it mirrors; if the journal was
+ * changed behind its back it is rebuilt from {@link OrderRepository} at startup or on the next query. A rebuild writes a new
+ * generation of files rather than truncating the old ones, which may still be mapped.
+ * <p>
+ * Rows are written in creation-time order, so a query binary-searches the timestamp column for its period and
+ * only reads that slice. Rows appended out of order, such as voids and imported older orders, go to an unsorted
+ * tail that every query scans in full; once the tail grows past {@value #MAX_UNSORTED_ROWS} rows the store is
+ * rebuilt in order.
+ * <p>
+ * All access happens under the {@link OrderRepository} lock, so the store never runs ahead of or behind the journal.
+ */
+public class OrderColumnStore {
+
+    private static final String COLUMNS_DIRECTORY_NAME = "columns";
+    private static final String META_FILE_NAME = "columns.meta";
+    private static final String[] COLUMN_NAMES = {"timestamp", "order", "item", "quantity", "price"};
+    private static final int[] COLUMN_WIDTHS = {Long.BYTES, Integer.BYTES, Integer.BYTES, Integer.BYTES, Double.BYTES};
+    private static final int TIMESTAMP = 0, ORDER_MARK = 1, ITEM = 2, QUANTITY = 3, PRICE = 4;
+    private static final int MAX_UNSORTED_ROWS = 4096;
+
+    private static boolean metaLoaded = false;
+    private static Path loadedDirectory;
+    private static int generation = 0;
+    private static int rowCount = 0;
+    // Rows [0, sortedRowCount) are in timestamp order; the rest is the unsorted tail.
+    private static int sortedRowCount = 0;
+    private static long lastSortedTimestamp = Long.MIN_VALUE;
+    private static String journalFingerprint = "";
+    private static final List<String> itemNames = new ArrayList<>();
+    private static final Map<String, Integer> itemIds = new HashMap<>();
+
+    /**
+     * Totals the orders created in a period.
+     * @param from Start of the period, inclusive.
+     * @param to End of the period, exclusive.
+     * @return The sales total, order count and item quantity for the period.
+     * @throws IOException if the store could not be read or rebuilt.
+     */
+    public static OrderStore.Totals summarize(LocalDateTime from, LocalDateTime to) throws IOException {
+        synchronized (OrderRepository.class) {
+            Columns columns = openColumns();
+            long fromSeconds = toSeconds(from), toSeconds = toSeconds(to);
+            double[] total = {0};
+            int[] counts = {0, 0}; // {orders, items}
+            forEachRow(columns, fromSeconds, toSeconds, row -> {
+                int quantity = columns.quantities.get(row);
+                total[0] += quantity * columns.prices.get(row);
+                counts[0] += columns.orderMarks.get(row);
+                counts[1] += quantity;
+            });
+            return new OrderStore.Totals(total[0], counts[0], counts[1]);
+        }
+    }
+
+    /**
+     * Totals each menu item sold in a period.
+     * @param from Start of the period, inclusive.
+     * @param to End of the period, exclusive.
+     * @return Per-item quantity and sales, highest sales first. Items with nothing sold are left out.
+     * @throws IOException if the store could not be read or rebuilt.
+     */
+    public static List<OrderStore.ItemTotals> summarizeByItem(LocalDateTime from, LocalDateTime to) throws IOException {
+        synchronized (OrderRepository.class) {
+            Columns columns = openColumns();
+            long fromSeconds = toSeconds(from), toSeconds = toSeconds(to);
+            int[] quantities = new int[itemNames.size()];
+            double[] totals = new double[itemNames.size()];
+            forEachRow(columns, fromSeconds, toSeconds, row -> {
+                int itemId = columns.itemIds.get(row);
+                int quantity = columns.quantities.get(row);
+                quantities[itemId] += quantity;
+                totals[itemId] += quantity * columns.prices.get(row);
+            });
+            List<OrderStore.ItemTotals> itemTotals = new ArrayList<>();
+            for (int itemId = 0; itemId < quantities.length; itemId++) {
+                if (quantities[itemId] != 0) itemTotals.add(new OrderStore.ItemTotals(itemNames.get(itemId), quantities[itemId], totals[itemId]));
+            }
+            itemTotals.sort((a, b) -> Double.compare(b.getTotal(), a.getTotal()));
+            return itemTotals;
+        }
+    }
+
+    /**
+     * Breaks a period's sales down by hour of the day.
+     * @param from Start of the period, inclusive.
+     * @param to End of the period, exclusive.
+     * @return 24 sales totals, index 0 covering 00:00-00:59.
+     * @throws IOException if the store could not be read or rebuilt.
+     */
+    public static double[] hourlyTotals(LocalDateTime from, LocalDateTime to) throws IOException {
+        synchronized (OrderRepository.class) {
+            Columns columns = openColumns();
+            long fromSeconds = toSeconds(from), toSeconds = toSeconds(to);
+            double[] totals = new double[24];
+            forEachRow(columns, fromSeconds, toSeconds, row -> {
+                int hour = (int) (Math.floorMod(columns.timestamps.get(row), 86_400L) / 3_600);
+                totals[hour] += columns.quantities.get(row) * columns.prices.get(row);
+            });
+            return totals;
+        }
+    }
+
+    /**
+     * Brings the store in line with the journal ahead of time, rebuilding it if it is missing or stale, so the
+     * first report does not pay for it. Called on a background thread at startup.
+     */
+    static void preload() {
+        synchronized (OrderRepository.class) {
+            try {
+                openColumns();
+            } catch (IOException e) {
+                System.err.println("Could not preload order column store: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Visits the rows created in [fromSeconds, toSeconds): the matching slice of the sorted rows, found by
+     * binary search, and the matching rows of the unsorted tail.
+     */
+    private static void forEachRow(Columns columns, long fromSeconds, long toSeconds, IntConsumer rowVisitor) {
+        int end = lowerBound(columns.timestamps, toSeconds);
+        for (int row = lowerBound(columns.timestamps, fromSeconds); row < end; row++) {
+            rowVisitor.accept(row);
+        }
+        for (int row = sortedRowCount; row < rowCount; row++) {
+            long timestamp = columns.timestamps.get(row);
+            if (timestamp >= fromSeconds && timestamp < toSeconds) rowVisitor.accept(row);
+        }
+    }
+
+    /**
+     * @return The first sorted row whose timestamp is not before the given one, or {@code sortedRowCount} if none is.
+     */
+    private static int lowerBound(LongBuffer timestamps, long seconds) {
+        int low = 0, high = sortedRowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps.get(mid) < seconds) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Mirrors orders that were just appended to the journal. Called by {@link OrderRepository} with its lock held.
+     * @param orders The appended orders.
+     * @param fingerprintBefore The journal fingerprint before the append.
+     * @param fingerprintAfter The journal fingerprint after the append.
+     */
+    static void onOrdersAppended(List<Order> orders, String fingerprintBefore, String fingerprintAfter) {
+        appendMirrored(orders, 1, fingerprintBefore, fingerprintAfter);
+    }
+
+    /**
+     * Mirrors a void that was just appended to the journal. Called by {@link OrderRepository} with its lock held.
+     */
+    static void onOrderVoided(Order order, String fingerprintBefore, String fingerprintAfter) {
+        appendMirrored(List.of(order), -1, fingerprintBefore, fingerprintAfter);
+    }
+
+    /**
+     * Notes that the journal was rewritten without changing the live orders, e.g. by compaction.
+     * Called by {@link OrderRepository} with its lock held.
+     */
+    static void onJournalRewritten(String fingerprintBefore, String fingerprintAfter) {
+        try {
+            loadMetaIfNeeded();
+            if (!journalFingerprint.equals(fingerprintBefore)) return;
+            journalFingerprint = fingerprintAfter;
+            saveMeta();
+        } catch (IOException e) {
+            System.err.println("Could not update order column store: " + e.getMessage());
+        }
+    }
+
+    private static void appendMirrored(List<Order> orders, int sign, String fingerprintBefore, String fingerprintAfter) {
+        try {
+            loadMetaIfNeeded();
+            // If the store was already behind, leave it stale; the next query rebuilds it.
+            if (!journalFingerprint.equals(fingerprintBefore)) return;
+            appendRows(orders, sign);
+            journalFingerprint = fingerprintAfter;
+            saveMeta();
+        } catch (IOException e) {
+            System.err.println("Could not update order column store, it will be rebuilt: " + e.getMessage());
+            journalFingerprint = "";
+        }
+    }
+
+    private static void appendRows(List<Order> orders, int sign) throws IOException {
+        int rowsBefore = rowCount;
+        List<String> newItemNames = new ArrayList<>();
+        ByteBuffer[] buffers = new ByteBuffer[COLUMN_NAMES.length];
+        int rows = 0;
+        for (Order order : orders) rows += order.getOrderItems().size();
+        for (int c = 0; c < buffers.length; c++) buffers[c] = ByteBuffer.allocate(rows * COLUMN_WIDTHS[c]);
+
+        boolean staysSorted = sortedRowCount == rowsBefore;
+        long lastTimestamp = lastSortedTimestamp;
+        for (Order order : orders) {
+            long timestamp = toSeconds(order.getCreatedDateTime());
+            if (!order.getOrderItems().isEmpty()) {
+                if (timestamp < lastTimestamp) staysSorted = false;
+                lastTimestamp = Math.max(lastTimestamp, timestamp);
+            }
+            boolean firstRow = true;
+            for (OrderItem item : order.getOrderItems()) {
+                Integer itemId = itemIds.get(item.getItemName());
+                if (itemId == null) {
+                    itemId = itemNames.size();
+                    itemNames.add(item.getItemName());
+                    itemIds.put(item.getItemName(), itemId);
+                    newItemNames.add(item.getItemName());
+                }
+                buffers[TIMESTAMP].putLong(timestamp);
+                buffers[ORDER_MARK].putInt(firstRow ? sign : 0);
+                buffers[ITEM].putInt(itemId);
+                buffers[QUANTITY].putInt(sign * item.getQuantity());
+                buffers[PRICE].putDouble(item.getUnitPrice());
+                firstRow = false;
+            }
+        }
+
+        if (!newItemNames.isEmpty()) {
+            StringBuilder dictionaryLines = new StringBuilder();
+            for (String itemName : newItemNames) dictionaryLines.append(escapeName(itemName)).append('\n');
+            Files.writeString(dictionaryPath(generation), dictionaryLines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        for (int c = 0; c < buffers.length; c++) {
+            buffers[c].flip();
+            try (FileChannel channel = FileChannel.open(columnPath(generation, c), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Write at the row count from the meta file, overwriting anything a torn write left past it.
+                long position = (long) rowsBefore * COLUMN_WIDTHS[c];
+                while (buffers[c].hasRemaining()) {
+                    position += channel.write(buffers[c], position);
+                }
+            }
+        }
+        rowCount = rowsBefore + rows;
+        if (staysSorted) {
+            sortedRowCount = rowCount;
+            lastSortedTimestamp = lastTimestamp;
+        }
+    }
+
+    /**
+     * Makes sure the store mirrors the current journal, rebuilding it if not, and maps its columns.
+     */
+    private static Columns openColumns() throws IOException {
+        loadMetaIfNeeded();
+        String currentFingerprint = OrderRepository.getJournalFingerprint();
+        if (!journalFingerprint.equals(currentFingerprint) || rowCount - sortedRowCount > MAX_UNSORTED_ROWS) {
+            rebuild(currentFingerprint);
+        }
+        return new Columns(
+                map(TIMESTAMP).asLongBuffer(),
+                map(ORDER_MARK).asIntBuffer(),
+                map(ITEM).asIntBuffer(),
+                map(QUANTITY).asIntBuffer(),
+                map(PRICE).asDoubleBuffer());
+    }
+
+    private static MappedByteBuffer map(int column) throws IOException {
+        Path path = columnPath(generation, column);
+        long length = (long) rowCount * COLUMN_WIDTHS[column];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+    }
+
+    /**
+     * Writes a new generation of the store from every order in the {@link OrderRepository}, oldest first.
+     */
+    private static void rebuild(String fingerprint) throws IOException {
+        int newGeneration = generation + 1;
+        List<String> newItemNames = new ArrayList<>();
+        Map<String, Integer> newItemIds = new HashMap<>();
+        int rows = 0;
+        long lastTimestamp = Long.MIN_VALUE;
+
+        DataOutputStream[] outputs = new DataOutputStream[COLUMN_NAMES.length];
+        try {
+            for (int c = 0; c < outputs.length; c++) {
+                outputs[c] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(columnPath(newGeneration, c))));
+            }
+            List<Order> orders = OrderRepository.getOrders();
+            orders.sort(Comparator.comparing(Order::getCreatedDateTime));
+            for (Order order : orders) {
+                long timestamp = toSeconds(order.getCreatedDateTime());
+                boolean firstRow = true;
+                for (OrderItem item : order.getOrderItems()) {
+                    Integer itemId = newItemIds.get(item.getItemName());
+                    if (itemId == null) {
+                        itemId = newItemNames.size();
+                        newItemNames.add(item.getItemName());
+                        newItemIds.put(item.getItemName(), itemId);
+                    }
+                    outputs[TIMESTAMP].writeLong(timestamp);
+                    outputs[ORDER_MARK].writeInt(firstRow ? 1 : 0);
+                    outputs[ITEM].writeInt(itemId);
+                    outputs[QUANTITY].writeInt(item.getQuantity());
+                    outputs[PRICE].writeDouble(item.getUnitPrice());
+                    firstRow = false;
+                    rows++;
+                    lastTimestamp = timestamp;
+                }
+            }
+        } finally {
+            for (DataOutputStream output : outputs) {
+                if (output != null) output.close();
+            }
+        }
+        StringBuilder dictionaryLines = new StringBuilder();
+        for (String itemName : newItemNames) dictionaryLines.append(escapeName(itemName)).append('\n');
+        Files.writeString(dictionaryPath(newGeneration), dictionaryLines, StandardCharsets.UTF_8);
+
+        int oldGeneration = generation;
+        generation = newGeneration;
+        rowCount = rows;
+        sortedRowCount = rows;
+        lastSortedTimestamp = lastTimestamp;
+        journalFingerprint = fingerprint;
+        itemNames.clear();
+        itemNames.addAll(newItemNames);
+        itemIds.clear();
+        itemIds.putAll(newItemIds);
+        saveMeta();
+        deleteGeneration(oldGeneration);
+        System.out.println("Rebuilt order column store: " + rows + " rows.");
+    }
+
+    private static void loadMetaIfNeeded() throws IOException {
+        Path directory = getColumnsDirectory();
+        if (metaLoaded && directory.equals(loadedDirectory)) return;
+
+        Files.createDirectories(directory);
+        generation = 0;
+        rowCount = 0;
+        sortedRowCount = 0;
+        lastSortedTimestamp = Long.MIN_VALUE;
+        journalFingerprint = "";
+        itemNames.clear();
+        itemIds.clear();
+        Path metaPath = directory.resolve(META_FILE_NAME);
+        if (Files.exists(metaPath)) {
+            try {
+                JSONObject meta = new JSONObject(Files.readString(metaPath, StandardCharsets.UTF_8));
+                generation = meta.getInt("generation");
+                rowCount = meta.getInt("rowCount");
+                // Stores written before rows were kept in order count as entirely unsorted.
+                sortedRowCount = Math.min(meta.optInt("sortedRowCount", 0), rowCount);
+                lastSortedTimestamp = meta.optLong("lastSortedTimestamp", Long.MIN_VALUE);
+                journalFingerprint = meta.getString("journalFingerprint");
+                int itemCount = meta.getInt("itemCount");
+                List<String> lines = Files.exists(dictionaryPath(generation)) ? Files.readAllLines(dictionaryPath(generation), StandardCharsets.UTF_8) : List.of();
+                if (lines.size() < itemCount) throw new IOException("item dictionary is incomplete");
+                for (int i = 0; i < itemCount; i++) {
+                    String itemName = unescapeName(lines.get(i));
+                    itemIds.put(itemName, itemNames.size());
+                    itemNames.add(itemName);
+                }
+                for (int c = 0; c < COLUMN_NAMES.length; c++) {
+                    Path column = columnPath(generation, c);
+                    if (!Files.exists(column) || Files.size(column) < (long) rowCount * COLUMN_WIDTHS[c]) throw new IOException(COLUMN_NAMES[c] + " column is incomplete");
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Order column store is unreadable and will be rebuilt: " + e.getMessage());
+                rowCount = 0;
+                sortedRowCount = 0;
+                lastSortedTimestamp = Long.MIN_VALUE;
+                journalFingerprint = "";
+                itemNames.clear();
+                itemIds.clear();
+            }
+        }
+        deleteStaleGenerations(directory);
+        loadedDirectory = directory;
+        metaLoaded = true;
+    }
+
+    private static void saveMeta() throws IOException {
+        JSONObject meta = new JSONObject();
+        meta.put("generation", generation);
+        meta.put("rowCount", rowCount);
+        meta.put("sortedRowCount", sortedRowCount);
+        meta.put("lastSortedTimestamp", lastSortedTimestamp);
+        meta.put("itemCount", itemNames.size());
+        meta.put("journalFingerprint", journalFingerprint);
+        Path metaPath = getColumnsDirectory().resolve(META_FILE_NAME);
+        Path tempPath = metaPath.resolveSibling(META_FILE_NAME + ".tmp");
+        Files.writeString(tempPath, meta.toString(2), StandardCharsets.UTF_8);
+        Files.move(tempPath, metaPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteGeneration(int oldGeneration) {
+        for (int c = 0; c < COLUMN_NAMES.length; c++) deleteQuietly(columnPath(oldGeneration, c));
+        deleteQuietly(dictionaryPath(oldGeneration));
+    }
+
+    /**
+     * Removes files from older generations that could not be deleted earlier (e.g. because they were still mapped).
+     */
+    private static void deleteStaleGenerations(Path directory) throws IOException {
+        String currentSuffix = "-" + generation + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*-*.{col,dict}")) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().contains(currentSuffix)) deleteQuietly(file);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Still mapped by an earlier query; removed on a later start.
+        }
+    }
+
+    private static Path getColumnsDirectory() {
+        return OrderJournal.getPartitionDirectory().resolve(COLUMNS_DIRECTORY_NAME);
+    }
+
+    private static Path columnPath(int columnGeneration, int column) {
+        return getColumnsDirectory().resolve(COLUMN_NAMES[column] + "-" + columnGeneration + ".col");
+    }
+
+    private static Path dictionaryPath(int dictionaryGeneration) {
+        return getColumnsDirectory().resolve("items-" + dictionaryGeneration + ".dict");
+    }
+
+    private static long toSeconds(LocalDateTime dateTime) {
+        if (dateTime.equals(LocalDateTime.MIN)) return Long.MIN_VALUE;
+        if (dateTime.equals(LocalDateTime.MAX)) return Long.MAX_VALUE;
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static String escapeName(String itemName) {
+        return itemName.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String unescapeName(String line) {
+        StringBuilder itemName = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                itemName.append(next == 'n' ? '\n' : next);
+            } else {
+                itemName.append(ch);
+            }
+        }
+        return itemName.toString();
+    }
+
+    private static class Columns {
+        final LongBuffer timestamps;
+        final IntBuffer orderMarks;
+        final IntBuffer itemIds;
+        final IntBuffer quantities;
+        final DoubleBuffer prices;
+
+        Columns(LongBuffer timestamps, IntBuffer orderMarks, IntBuffer itemIds, IntBuffer quantities, DoubleBuffer prices) {
+            this.timestamps = timestamps;
+            this.orderMarks = orderMarks;
+            this.itemIds = itemIds;
+            this.quantities = quantities;
+            this.prices = prices;
+        }
+    }
+}
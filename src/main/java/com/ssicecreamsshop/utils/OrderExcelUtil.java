@@ -6,124 +6,256 @@ import com.ssicecreamsshop.model.OrderItem;
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class OrderExcelUtil {
 
     private static final String[] HEADERS = {"Order ID", "Item Name", "Quantity", "Unit Price", "Created Date", "Created Time", "Total Item Price", "Daily Incremental Total"};
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
-    private static final DateTimeFormatter DATETIME_FORMATTER_DISPLAY = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int EXPORT_ROW_WINDOW = 100;
+    private static final long EXPORT_INTERVAL_MINUTES = 5;
+
+    private static volatile boolean exportDirty = false;
+    private static ScheduledExecutorService exportScheduler;
+    // Guards only the choice of store, so saving and reading orders never wait for an export to finish.
+    private static final Object orderStoreLock = new Object();
+    private static OrderStore orderStore;
+    private static String orderStoreType;
+    // Keeps the scheduled and the shutdown export from writing the workbook at the same time.
+    private static final Object exportLock = new Object();
 
 
     private static Path getOrdersFilePath() {
         return Paths.get(ConfigManager.getOrdersExcelPath());
     }
 
-    public static synchronized void saveOrderToExcel(Order order) {
-        Path filePath = getOrdersFilePath();
-        File file = filePath.toFile();
-        Workbook workbook;
-        Sheet sheet;
+    /**
+     * Gets the order store selected in {@link ConfigManager#getOrderStoreType()}.
+     * If the selection has changed since the last call, the new store is opened and brought in line with the
+     * previous one, which is then closed, so no order placed or deleted under either store goes missing.
+     * If that fails the previous store stays selected.
+     * @return The active order store.
+     */
+    public static OrderStore getOrderStore() {
+        synchronized (orderStoreLock) {
+            String type = ConfigManager.getOrderStoreType();
+            if (orderStore == null || !type.equals(orderStoreType)) {
+                OrderStore selected = ConfigManager.ORDER_STORE_SQL.equals(type) ? new SqlOrderStore() : new JournalOrderStore();
+                if (orderStore != null) {
+                    try {
+                        copyOrders(orderStore, selected);
+                    } catch (IOException | RuntimeException e) {
+                        selected.close();
+                        ConfigManager.setOrderStoreType(orderStoreType);
+                        System.err.println("Error switching order store; keeping the previous one: " + e.getMessage());
+                        e.printStackTrace();
+                        showAlert(Alert.AlertType.ERROR, "Order Store Not Switched",
+                                "The orders could not be copied to the selected store, so the previous store is still in use: " + e.getMessage());
+                        return orderStore;
+                    }
+                    orderStore.close();
+                }
+                orderStore = selected;
+                orderStoreType = type;
+                exportDirty = true;
+            }
+            return orderStore;
+        }
+    }
+
+    /**
+     * Makes one store hold exactly the orders of another: orders it is missing are appended and orders
+     * the source no longer has, e.g. deleted while it was selected, are removed.
+     */
+    private static void copyOrders(OrderStore source, OrderStore target) throws IOException {
+        Set<String> targetOrderIds = target.getOrderIds();
+        Set<String> sourceOrderIds = new HashSet<>();
+        List<Order> missingOrders = new ArrayList<>();
+        source.forEach(LocalDate.MIN, LocalDate.MAX, order -> {
+            sourceOrderIds.add(order.getOrderId());
+            if (!targetOrderIds.contains(order.getOrderId())) missingOrders.add(order);
+        });
+        List<Order> extraOrders = new ArrayList<>();
+        target.forEach(LocalDate.MIN, LocalDate.MAX, order -> {
+            if (!sourceOrderIds.contains(order.getOrderId())) extraOrders.add(order);
+        });
+        missingOrders.sort(Comparator.comparing(Order::getCreatedDateTime));
+        target.append(missingOrders);
+        for (Order order : extraOrders) {
+            target.delete(order.getOrderId(), order.getCreatedDateTime().toLocalDate());
+        }
+        System.out.println("Switched order store: copied " + missingOrders.size() + " orders, removed " + extraOrders.size() + ".");
+    }
 
-        double currentOrderTotal = order.getOrderTotalAmount();
-        double dailyIncrementalTotalForThisOrder = currentOrderTotal;
+    /**
+     * Closes the active order store. Called once at shutdown, after the final export.
+     */
+    public static void closeOrderStore() {
+        synchronized (orderStoreLock) {
+            if (orderStore == null) return;
+            orderStore.close();
+            orderStore = null;
+            orderStoreType = null;
+        }
+    }
 
+    /**
+     * Records an order in the active {@link OrderStore}, which is the system of record;
+     * the 'orders.xlsx' workbook is regenerated from the store later by {@link #exportOrdersWorkbook()}.
+     * @param order The order to save.
+     */
+    public static void saveOrderToExcel(Order order) {
         try {
-            if (filePath.getParent() != null && !Files.exists(filePath.getParent())) {
-                Files.createDirectories(filePath.getParent());
-            }
+            saveOrders(List.of(order));
+            System.out.println("Order " + order.getOrderId() + " saved to the order store.");
+        } catch (Exception e) {
+            System.err.println("Error saving order: " + e.getMessage());
+            e.printStackTrace();
+            showAlert(Alert.AlertType.ERROR, "Order Save Error", "Could not save order: " + e.getMessage());
+        }
+    }
 
-            if (file.exists() && file.length() > 0) {
-                try (FileInputStream fis = new FileInputStream(file)) {
-                    workbook = WorkbookFactory.create(fis);
-                }
-                sheet = workbook.getSheetAt(0);
-                if (sheet == null) {
-                    sheet = workbook.createSheet("Orders");
-                    createHeaderRow(sheet, workbook);
-                }
+    /**
+     * Records several orders with a single write to the active {@link OrderStore} and marks 'orders.xlsx' for re-export.
+     * Unlike {@link #saveOrderToExcel(Order)}, failures are reported to the caller instead of shown as an alert.
+     * @param orders The orders to save, oldest first.
+     * @throws IOException if the orders could not be recorded.
+     */
+    public static void saveOrders(List<Order> orders) throws IOException {
+        getOrderStore().append(orders);
+        exportDirty = true;
+    }
 
-                LocalDate today = order.getCreatedDateTime().toLocalDate();
-                for (int i = sheet.getLastRowNum(); i >= 1; i--) {
-                    Row row = sheet.getRow(i);
-                    if (row == null) continue;
-                    Cell dateCell = row.getCell(4);
-                    if (dateCell != null && dateCell.getCellType() == CellType.STRING) {
-                        try {
-                            LocalDate rowDate = LocalDate.parse(dateCell.getStringCellValue(), DATE_FORMATTER);
-                            if (rowDate.isEqual(today)) {
-                                Cell incrementalTotalCell = row.getCell(7);
-                                if (incrementalTotalCell != null && incrementalTotalCell.getCellType() == CellType.NUMERIC) {
-                                    dailyIncrementalTotalForThisOrder += incrementalTotalCell.getNumericCellValue();
-                                }
-                                break;
-                            } else if (rowDate.isBefore(today)) {
-                                break;
-                            }
-                        } catch (Exception e) {
-                            System.err.println("Error parsing date from Excel row " + i + " for incremental total: " + e.getMessage());
-                        }
-                    }
-                }
+    /**
+     * Regenerates 'orders.xlsx' from the active order store, computing the "Daily Incremental Total" column
+     * in a single chronological pass. The workbook is written to a temporary file and moved into place,
+     * so a reader never sees a half-written export. Only taking the snapshot goes through the store; the
+     * workbook is written without holding anything that saving or reading orders needs.
+     */
+    public static void exportOrdersWorkbook() {
+        synchronized (exportLock) {
+            writeOrdersWorkbook();
+        }
+    }
 
-            } else {
-                workbook = new XSSFWorkbook();
-                sheet = workbook.createSheet("Orders");
-                createHeaderRow(sheet, workbook);
-            }
+    private static void writeOrdersWorkbook() {
+        Path filePath = getOrdersFilePath();
+        // Cleared before the snapshot is taken, so an order saved while the workbook is written marks it dirty again.
+        exportDirty = false;
+        try {
+            List<Order> orders = new ArrayList<>(getOrderStore().loadAll());
+            orders.sort(Comparator.comparing(Order::getCreatedDateTime));
 
-            int lastRowNum = sheet.getLastRowNum();
-            if (sheet.getPhysicalNumberOfRows() <= 1) {
-                lastRowNum = 0;
+            if (filePath.getParent() != null && !Files.exists(filePath.getParent())) {
+                Files.createDirectories(filePath.getParent());
             }
+            Path tempPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
 
+            SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_ROW_WINDOW);
+            try {
+                Sheet sheet = workbook.createSheet("Orders");
+                createHeaderRow(sheet, workbook);
 
-            for (OrderItem item : order.getOrderItems()) {
-                Row dataRow = sheet.createRow(++lastRowNum);
-                dataRow.createCell(0).setCellValue(order.getOrderId());
-                dataRow.createCell(1).setCellValue(item.getItemName());
-                dataRow.createCell(2).setCellValue(item.getQuantity());
-                dataRow.createCell(3).setCellValue(item.getUnitPrice());
-                dataRow.createCell(4).setCellValue(order.getCreatedDateTime().toLocalDate().format(DATE_FORMATTER));
-                dataRow.createCell(5).setCellValue(order.getCreatedDateTime().toLocalTime().format(TIME_FORMATTER));
-                dataRow.createCell(6).setCellValue(item.getTotalItemPrice());
-                dataRow.createCell(7).setCellValue(dailyIncrementalTotalForThisOrder);
-            }
+                int rowNum = 0;
+                LocalDate runningDate = null;
+                double dailyIncrementalTotal = 0;
+                for (Order order : orders) {
+                    LocalDate orderDate = order.getCreatedDateTime().toLocalDate();
+                    if (!orderDate.equals(runningDate)) {
+                        runningDate = orderDate;
+                        dailyIncrementalTotal = 0;
+                    }
+                    dailyIncrementalTotal += order.getOrderTotalAmount();
+
+                    for (OrderItem item : order.getOrderItems()) {
+                        Row dataRow = sheet.createRow(++rowNum);
+                        dataRow.createCell(0).setCellValue(order.getOrderId());
+                        dataRow.createCell(1).setCellValue(item.getItemName());
+                        dataRow.createCell(2).setCellValue(item.getQuantity());
+                        dataRow.createCell(3).setCellValue(item.getUnitPrice());
+                        dataRow.createCell(4).setCellValue(orderDate.format(DATE_FORMATTER));
+                        dataRow.createCell(5).setCellValue(order.getCreatedDateTime().toLocalTime().format(TIME_FORMATTER));
+                        dataRow.createCell(6).setCellValue(item.getTotalItemPrice());
+                        dataRow.createCell(7).setCellValue(dailyIncrementalTotal);
+                    }
+                }
 
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                workbook.write(fos);
+                try (FileOutputStream fos = new FileOutputStream(tempPath.toFile())) {
+                    workbook.write(fos);
+                }
+            } finally {
+                workbook.dispose();
+                workbook.close();
             }
-            workbook.close();
-            System.out.println("Order " + order.getOrderId() + " saved to Excel.");
-
+            Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Regenerated " + filePath + " from the order store (" + orders.size() + " orders).");
         } catch (Exception e) {
-            System.err.println("Error saving order to Excel: " + e.getMessage());
+            exportDirty = true;
+            System.err.println("Error regenerating orders workbook: " + e.getMessage());
             e.printStackTrace();
-            showAlert(Alert.AlertType.ERROR, "Excel Save Error", "Could not save order to Excel file: " + e.getMessage());
         }
     }
 
+    /**
+     * Starts a background job that regenerates 'orders.xlsx' every few minutes whenever new orders
+     * have been recorded since the last export.
+     */
+    public static synchronized void startScheduledExport() {
+        if (exportScheduler != null) return;
+        if (!ConfigManager.ORDER_STORE_JOURNAL.equals(ConfigManager.getOrderStoreType())) {
+            exportDirty = true;
+        } else try {
+            // The partition manifest is rewritten whenever an order is journaled or voided.
+            Path manifestPath = OrderPartitionManifest.getManifestPath();
+            Path workbookPath = getOrdersFilePath();
+            exportDirty = Files.exists(manifestPath) && (!Files.exists(workbookPath)
+                    || Files.getLastModifiedTime(manifestPath).compareTo(Files.getLastModifiedTime(workbookPath)) > 0);
+        } catch (IOException e) {
+            exportDirty = true;
+        }
+        exportScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("OrdersWorkbook-Exporter");
+            t.setDaemon(true);
+            return t;
+        });
+        exportScheduler.scheduleWithFixedDelay(() -> {
+            if (exportDirty) exportOrdersWorkbook();
+        }, EXPORT_INTERVAL_MINUTES, EXPORT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops the scheduled export and brings 'orders.xlsx' up to date one last time if needed.
+     */
+    public static synchronized void stopScheduledExport() {
+        if (exportScheduler != null) {
+            exportScheduler.shutdownNow();
+            exportScheduler = null;
+        }
+        if (exportDirty) exportOrdersWorkbook();
+    }
+
     private static void createHeaderRow(Sheet sheet, Workbook workbook) {
         Row headerRow = sheet.createRow(0);
         CellStyle headerStyle = workbook.createCellStyle();
@@ -137,95 +269,90 @@ public class OrderExcelUtil {
         }
     }
 
+    /**
+     * Loads every recorded order from the active {@link OrderStore}, newest first.
+     * @return The list of orders; empty if none have been recorded.
+     */
     public static List<Order> loadOrdersFromExcel() {
         List<Order> orders = new ArrayList<>();
-        Path filePath = getOrdersFilePath();
-
-        // --- FIX: Check if the file exists AND is not empty before trying to read ---
         try {
-            if (!Files.exists(filePath) || Files.size(filePath) == 0) {
-                System.out.println("Orders file does not exist or is empty. Nothing to load.");
-                return orders; // Return empty list
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            showAlert(Alert.AlertType.ERROR, "File System Error", "Could not check the size of the orders file.");
-            return orders;
-        }
-
-        try (FileInputStream fis = new FileInputStream(filePath.toFile()); Workbook workbook = WorkbookFactory.create(fis)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet == null) return orders;
-
-            Map<String, List<OrderItem>> orderItemsMap = new LinkedHashMap<>();
-            Map<String, LocalDateTime> orderCreationTimeMap = new HashMap<>();
-            DataFormatter dataFormatter = new DataFormatter();
-
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-
-                String orderId = dataFormatter.formatCellValue(row.getCell(0)).trim();
-                if (orderId.isEmpty()) continue;
-
-                String itemName = dataFormatter.formatCellValue(row.getCell(1));
-                int quantity = (int) Double.parseDouble(dataFormatter.formatCellValue(row.getCell(2)));
-                double unitPrice = Double.parseDouble(dataFormatter.formatCellValue(row.getCell(3)));
-
-                OrderItem orderItem = new OrderItem(itemName, quantity, unitPrice);
-                orderItemsMap.computeIfAbsent(orderId, k -> new ArrayList<>()).add(orderItem);
-
-                if (!orderCreationTimeMap.containsKey(orderId)) {
-                    String dateStr = dataFormatter.formatCellValue(row.getCell(4));
-                    String timeStr = dataFormatter.formatCellValue(row.getCell(5));
-                    try {
-                        LocalDateTime createdDateTime = LocalDateTime.parse(dateStr + " " + timeStr, DATETIME_FORMATTER_DISPLAY);
-                        orderCreationTimeMap.put(orderId, createdDateTime);
-                    } catch (Exception e) {
-                        orderCreationTimeMap.put(orderId, LocalDateTime.MIN);
-                    }
-                }
-            }
-
-            for (Map.Entry<String, List<OrderItem>> entry : orderItemsMap.entrySet()) {
-                String orderId = entry.getKey();
-                orders.add(new Order(orderId, orderCreationTimeMap.getOrDefault(orderId, LocalDateTime.MIN), entry.getValue()));
-            }
-
+            orders = new ArrayList<>(getOrderStore().loadAll());
             orders.sort((o1, o2) -> o2.getCreatedDateTime().compareTo(o1.getCreatedDateTime()));
         } catch (Exception e) {
             e.printStackTrace();
-            showAlert(Alert.AlertType.ERROR, "Excel Load Error", "Could not load orders from Excel: " + e.getMessage());
+            showAlert(Alert.AlertType.ERROR, "Order Load Error", "Could not load orders: " + e.getMessage());
         }
         return orders;
     }
 
-    public static synchronized boolean deleteOrderFromExcel(String orderIdToDelete, LocalDate orderDateToDelete) {
-        Path filePath = getOrdersFilePath();
-        if (!Files.exists(filePath)) return false;
-
-        List<Order> allOrders = loadOrdersFromExcel();
-        List<Order> ordersToKeep = allOrders.stream()
-                .filter(order -> !order.getOrderId().equals(orderIdToDelete))
-                .collect(Collectors.toList());
+    /**
+     * Hands every recorded order from the active {@link OrderStore} to the given consumer, oldest first.
+     * @param orderConsumer Called once per order.
+     */
+    public static void forEachOrder(Consumer<Order> orderConsumer) {
+        try {
+            getOrderStore().forEach(LocalDate.MIN, LocalDate.MAX, orderConsumer);
+        } catch (Exception e) {
+            e.printStackTrace();
+            showAlert(Alert.AlertType.ERROR, "Order Load Error", "Could not load orders: " + e.getMessage());
+        }
+    }
 
-        if (allOrders.size() == ordersToKeep.size()) {
-            return false;
+    /**
+     * Hands the orders created within a date range to the given consumer. The journal store reads only
+     * the month partitions that overlap the range; the SQL store uses its creation-time index.
+     * @param startDate The first day of the range, inclusive.
+     * @param endDate The last day of the range, inclusive.
+     * @param orderConsumer Called once per matching order.
+     */
+    public static void forEachOrder(LocalDate startDate, LocalDate endDate, Consumer<Order> orderConsumer) {
+        try {
+            getOrderStore().forEach(startDate, endDate, orderConsumer);
+        } catch (Exception e) {
+            e.printStackTrace();
+            showAlert(Alert.AlertType.ERROR, "Order Load Error", "Could not load orders: " + e.getMessage());
         }
+    }
 
+    /**
+     * Reads orders directly from an orders workbook laid out like 'orders.xlsx'.
+     * Only used to carry a pre-journal workbook over into the {@link OrderJournal}.
+     * The workbook is streamed, so even a large history does not have to fit in memory as a workbook.
+     * @param filePath The workbook to read.
+     * @return The orders found in the workbook, in file order.
+     * @throws IOException if the workbook could not be read.
+     */
+    static List<Order> loadOrdersFromWorkbook(Path filePath) throws IOException {
+        Map<String, Order> ordersById = new LinkedHashMap<>();
         try {
-            Files.deleteIfExists(filePath);
+            OrderSheetReader.readOrdersWorkbook(filePath.toFile(), order -> {
+                Order existing = ordersById.get(order.getOrderId());
+                if (existing == null) {
+                    ordersById.put(order.getOrderId(), order);
+                } else {
+                    // Rows of one order that were not contiguous in the sheet.
+                    List<OrderItem> mergedItems = new ArrayList<>(existing.getOrderItems());
+                    mergedItems.addAll(order.getOrderItems());
+                    existing.setOrderItems(mergedItems);
+                }
+            });
+        } catch (NumberFormatException e) {
+            throw new IOException("Could not read orders from " + filePath + ": " + e.getMessage(), e);
+        }
+        return new ArrayList<>(ordersById.values());
+    }
 
-            // Re-save the remaining orders. This will naturally recalculate totals.
-            // Sorting by date before saving ensures incremental totals are correct.
-            ordersToKeep.sort((o1, o2) -> o1.getCreatedDateTime().compareTo(o2.getCreatedDateTime()));
-            for (Order order : ordersToKeep) {
-                saveOrderToExcel(order);
+    public static boolean deleteOrderFromExcel(String orderIdToDelete, LocalDate orderDateToDelete) {
+        try {
+            // The journal store appends a void record and compacts later; the workbook is re-exported in the background.
+            if (!getOrderStore().delete(orderIdToDelete, orderDateToDelete)) {
+                return false;
             }
+            exportDirty = true;
             return true;
         } catch (IOException e) {
             e.printStackTrace();
-            showAlert(Alert.AlertType.ERROR, "Excel Write Error", "Failed to rewrite orders file after deletion.");
+            showAlert(Alert.AlertType.ERROR, "Order Delete Error", "Failed to record the deletion in the order store.");
             return false;
         }
     }
@@ -0,0 +1,293 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.Order;
+import com.ssicecreamsshop.model.OrderItem;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Append-only journal of placed orders. This is the system of record for order history:
+ * every order is written as a single line of JSON and forced to disk, so the cost of saving
+ * an order no longer depends on how many orders came before it.
+ * The journal is partitioned by the month an order was created in ('orders/orders-2024-05.journal'),
+ * so reading or rewriting one month never touches the others.
+ * The 'orders.xlsx' workbook is derived from this journal by {@link OrderExcelUtil}.
+ * Deleting an order appends a void record (a tombstone) to its partition instead of rewriting the file;
+ * voided orders are dropped for good when the partition is next compacted.
+ */
+public class OrderJournal {
+
+    private static final DateTimeFormatter RECORD_DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String RECORD_TYPE_ORDER = "order";
+    private static final String RECORD_TYPE_VOID = "void";
+    private static final String PARTITION_PREFIX = "orders-";
+    private static final String PARTITION_SUFFIX = ".journal";
+
+    /**
+     * @return The directory holding one journal file per month.
+     */
+    public static Path getPartitionDirectory() {
+        return Paths.get(ConfigManager.getOrdersPartitionDirectory());
+    }
+
+    /**
+     * @param month A calendar month.
+     * @return The journal file for orders created in that month. It may not exist yet.
+     */
+    public static Path getPartitionPath(YearMonth month) {
+        return getPartitionDirectory().resolve(PARTITION_PREFIX + month + PARTITION_SUFFIX);
+    }
+
+    /**
+     * @param createdDateTime When an order was created.
+     * @return The month partition the order belongs to.
+     */
+    public static YearMonth partitionOf(LocalDateTime createdDateTime) {
+        return YearMonth.from(createdDateTime);
+    }
+
+    /**
+     * Lists the months that have a journal file, oldest first.
+     * @return The partitions present on disk.
+     * @throws IOException if the partition directory could not be listed.
+     */
+    public static synchronized TreeSet<YearMonth> listPartitions() throws IOException {
+        ensureInitialized();
+        TreeSet<YearMonth> months = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(getPartitionDirectory(), PARTITION_PREFIX + "*" + PARTITION_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String month = fileName.substring(PARTITION_PREFIX.length(), fileName.length() - PARTITION_SUFFIX.length());
+                try {
+                    months.add(YearMonth.parse(month));
+                } catch (DateTimeParseException e) {
+                    System.err.println("Ignoring unrecognised file in order journal directory: " + fileName);
+                }
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Appends several orders of one month to that month's journal with a single write and a single fsync.
+     * @param month The partition the orders belong to.
+     * @param orders The orders to record, in the order they should appear in the journal.
+     * @throws IOException if the records could not be written.
+     */
+    public static synchronized void appendAll(YearMonth month, List<Order> orders) throws IOException {
+        if (orders.isEmpty()) return;
+        StringBuilder records = new StringBuilder();
+        for (Order order : orders) {
+            records.append(toRecord(order)).append('\n');
+        }
+        appendRecords(month, records);
+    }
+
+    /**
+     * Appends a void record for an order to its month's journal and forces it to disk before returning.
+     * The order's own record stays in the journal until the next {@link #rewrite}, but is ignored when replaying.
+     * @param month The partition the voided order belongs to.
+     * @param orderId The ID of the order to void.
+     * @throws IOException if the record could not be written.
+     */
+    public static synchronized void appendVoid(YearMonth month, String orderId) throws IOException {
+        JSONObject record = new JSONObject();
+        record.put("type", RECORD_TYPE_VOID);
+        record.put("orderId", orderId);
+        record.put("voidedDateTime", LocalDateTime.now().format(RECORD_DATETIME_FORMATTER));
+        appendRecords(month, new StringBuilder(record.toString()).append('\n'));
+    }
+
+    private static void appendRecords(YearMonth month, StringBuilder records) throws IOException {
+        ensureInitialized();
+        Path journalPath = getPartitionPath(month);
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() > 0) {
+                // Never glue a new record onto a torn one left behind by an interrupted write.
+                ByteBuffer lastByte = ByteBuffer.allocate(1);
+                channel.read(lastByte, channel.size() - 1);
+                if (lastByte.get(0) != '\n') records.insert(0, '\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+            channel.position(channel.size());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Streams every record in one month's journal to the matching callback, one record at a time.
+     * A void applies to the records for that order ID that came before it.
+     * A torn trailing record (for example after a power cut mid-write) is skipped.
+     * @param month The partition to read.
+     * @param orderConsumer Called once per order record, in the order they were appended.
+     * @param voidConsumer Called with the order ID of each void record, in the order they were appended.
+     * @throws IOException if the journal exists but could not be read.
+     */
+    public static synchronized void replay(YearMonth month, Consumer<Order> orderConsumer, Consumer<String> voidConsumer) throws IOException {
+        ensureInitialized();
+        replayFile(getPartitionPath(month), orderConsumer, voidConsumer);
+    }
+
+    private static void replayFile(Path journalPath, Consumer<Order> orderConsumer, Consumer<String> voidConsumer) throws IOException {
+        if (!Files.exists(journalPath)) return;
+
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                Order order = null;
+                String voidedOrderId = null;
+                try {
+                    JSONObject record = new JSONObject(line);
+                    if (RECORD_TYPE_VOID.equals(record.optString("type", RECORD_TYPE_ORDER))) {
+                        voidedOrderId = record.getString("orderId");
+                    } else {
+                        order = fromRecord(record);
+                    }
+                } catch (JSONException e) {
+                    System.err.println("Skipping unreadable order journal record in " + journalPath.getFileName() + " at line " + lineNumber + ": " + e.getMessage());
+                    continue;
+                }
+                if (order != null) orderConsumer.accept(order);
+                else voidConsumer.accept(voidedOrderId);
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces one month's journal with the given orders, written in one streaming pass.
+     * Used to compact away voided orders and their void records.
+     * @param month The partition to replace.
+     * @param orders The complete set of orders the partition should contain.
+     * @throws IOException if the new journal could not be written.
+     */
+    public static synchronized void rewrite(YearMonth month, List<Order> orders) throws IOException {
+        ensureInitialized();
+        writeJournalFile(getPartitionPath(month), orders);
+    }
+
+    private static void writeJournalFile(Path journalPath, List<Order> orders) throws IOException {
+        Path tempPath = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            for (Order order : orders) {
+                writer.write(toRecord(order).toString());
+                writer.write('\n');
+            }
+        }
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Creates the partition directory on first use. Orders from before partitioning are carried over so no
+     * history is lost: from the single 'orders.journal' if there is one, otherwise from an 'orders.xlsx'
+     * written before the journal existed. The partitions are built in a scratch directory that is only
+     * renamed into place once complete, and the old files are kept as backups.
+     */
+    private static void ensureInitialized() throws IOException {
+        Path partitionDirectory = getPartitionDirectory();
+        if (Files.isDirectory(partitionDirectory)) return;
+
+        Path legacyJournalPath = Paths.get(ConfigManager.getOrdersJournalPath());
+        Path legacyWorkbookPath = Paths.get(ConfigManager.getOrdersExcelPath());
+        List<Order> legacyOrders = new ArrayList<>();
+        if (Files.exists(legacyJournalPath)) {
+            Map<String, Order> liveOrders = new LinkedHashMap<>();
+            replayFile(legacyJournalPath, order -> liveOrders.put(order.getOrderId(), order), liveOrders::remove);
+            legacyOrders.addAll(liveOrders.values());
+            System.out.println("Partitioning " + legacyOrders.size() + " orders from " + legacyJournalPath + " by month.");
+        } else if (Files.exists(legacyWorkbookPath) && Files.size(legacyWorkbookPath) > 0) {
+            legacyOrders = OrderExcelUtil.loadOrdersFromWorkbook(legacyWorkbookPath);
+            legacyOrders.sort(Comparator.comparing(Order::getCreatedDateTime));
+            Files.copy(legacyWorkbookPath, legacyWorkbookPath.resolveSibling("orders-pre-journal.xlsx"), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Migrating " + legacyOrders.size() + " orders from " + legacyWorkbookPath + " into the order journal.");
+        }
+
+        Map<YearMonth, List<Order>> ordersByMonth = new TreeMap<>();
+        for (Order order : legacyOrders) {
+            ordersByMonth.computeIfAbsent(partitionOf(order.getCreatedDateTime()), m -> new ArrayList<>()).add(order);
+        }
+        Path scratchDirectory = partitionDirectory.resolveSibling(partitionDirectory.getFileName() + ".tmp");
+        if (Files.exists(scratchDirectory)) {
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(scratchDirectory)) {
+                for (Path leftover : leftovers) Files.delete(leftover);
+            }
+        } else {
+            Files.createDirectories(scratchDirectory);
+        }
+        for (Map.Entry<YearMonth, List<Order>> entry : ordersByMonth.entrySet()) {
+            writeJournalFile(scratchDirectory.resolve(PARTITION_PREFIX + entry.getKey() + PARTITION_SUFFIX), entry.getValue());
+        }
+        Files.move(scratchDirectory, partitionDirectory, StandardCopyOption.ATOMIC_MOVE);
+        if (Files.exists(legacyJournalPath)) {
+            Files.move(legacyJournalPath, legacyJournalPath.resolveSibling("orders-pre-partition.journal"), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static JSONObject toRecord(Order order) {
+        JSONArray items = new JSONArray();
+        for (OrderItem item : order.getOrderItems()) {
+            JSONObject itemRecord = new JSONObject();
+            itemRecord.put("name", item.getItemName());
+            itemRecord.put("quantity", item.getQuantity());
+            itemRecord.put("unitPrice", item.getUnitPrice());
+            items.put(itemRecord);
+        }
+        JSONObject record = new JSONObject();
+        record.put("type", RECORD_TYPE_ORDER);
+        record.put("orderId", order.getOrderId());
+        record.put("createdDateTime", order.getCreatedDateTime().format(RECORD_DATETIME_FORMATTER));
+        record.put("items", items);
+        return record;
+    }
+
+    private static Order fromRecord(JSONObject record) {
+        LocalDateTime createdDateTime;
+        try {
+            createdDateTime = LocalDateTime.parse(record.getString("createdDateTime"), RECORD_DATETIME_FORMATTER);
+        } catch (Exception e) {
+            createdDateTime = LocalDateTime.MIN;
+        }
+        List<OrderItem> items = new ArrayList<>();
+        JSONArray itemsArray = record.getJSONArray("items");
+        for (int i = 0; i < itemsArray.length(); i++) {
+            JSONObject itemRecord = itemsArray.getJSONObject(i);
+            items.add(new OrderItem(itemRecord.getString("name"), itemRecord.getInt("quantity"), itemRecord.getDouble("unitPrice")));
+        }
+        return new Order(record.getString("orderId"), createdDateTime, items);
+    }
+}
@@ -0,0 +1,170 @@
+package com.ssicecreamsshop.utils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Small summary of the month partitions of the {@link OrderJournal}, kept in 'orders/manifest.json'.
+ * For each partition it records the dates it covers, how many orders, item rows and items it holds and their total,
+ * so date-range questions can skip partitions that do not overlap and answer fully covered months without
+ * opening them. Every entry also remembers the size and modification time of its journal file; an entry
+ * that no longer matches its file is stale and is rebuilt by {@link OrderRepository}.
+ */
+public class OrderPartitionManifest {
+
+    private static final String MANIFEST_FILE_NAME = "manifest.json";
+
+    /**
+     * @return The path of the manifest inside the partition directory.
+     */
+    public static Path getManifestPath() {
+        return OrderJournal.getPartitionDirectory().resolve(MANIFEST_FILE_NAME);
+    }
+
+    /**
+     * Reads the manifest. A missing or unreadable manifest yields no entries, so every partition is re-summarised.
+     * @return The entries by month, oldest first.
+     */
+    public static TreeMap<YearMonth, Entry> load() {
+        TreeMap<YearMonth, Entry> entries = new TreeMap<>();
+        Path manifestPath = getManifestPath();
+        if (!Files.exists(manifestPath)) return entries;
+        try {
+            JSONArray partitions = new JSONObject(Files.readString(manifestPath, StandardCharsets.UTF_8)).getJSONArray("partitions");
+            for (int i = 0; i < partitions.length(); i++) {
+                Entry entry = Entry.fromJson(partitions.getJSONObject(i));
+                entries.put(entry.getMonth(), entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Order partition manifest is unreadable and will be rebuilt: " + e.getMessage());
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Replaces the manifest with the given entries. The file is written to a temporary file and moved into place;
+     * it is not forced to disk because it can always be rebuilt from the partitions.
+     * @param entries The entries to store.
+     * @throws IOException if the manifest could not be written.
+     */
+    public static void save(Map<YearMonth, Entry> entries) throws IOException {
+        JSONArray partitions = new JSONArray();
+        for (Entry entry : entries.values()) {
+            partitions.put(entry.toJson());
+        }
+        JSONObject root = new JSONObject();
+        root.put("partitions", partitions);
+
+        Path manifestPath = getManifestPath();
+        Path tempPath = manifestPath.resolveSibling(MANIFEST_FILE_NAME + ".tmp");
+        Files.writeString(tempPath, root.toString(2), StandardCharsets.UTF_8);
+        try {
+            Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Immutable summary of one month partition.
+     */
+    public static class Entry {
+        private final YearMonth month;
+        private final LocalDate firstDate;
+        private final LocalDate lastDate;
+        private final int orderCount;
+        private final int itemRowCount;
+        private final int itemQuantity;
+        private final double total;
+        private final int voidRecordCount;
+        private final long journalSize;
+        private final long journalModifiedMillis;
+
+        Entry(YearMonth month, LocalDate firstDate, LocalDate lastDate, int orderCount, int itemRowCount, int itemQuantity,
+              double total, int voidRecordCount, long journalSize, long journalModifiedMillis) {
+            this.month = month;
+            this.firstDate = firstDate;
+            this.lastDate = lastDate;
+            this.orderCount = orderCount;
+            this.itemRowCount = itemRowCount;
+            this.itemQuantity = itemQuantity;
+            this.total = total;
+            this.voidRecordCount = voidRecordCount;
+            this.journalSize = journalSize;
+            this.journalModifiedMillis = journalModifiedMillis;
+        }
+
+        /**
+         * @return true if the partition holds at least one order dated within the inclusive range.
+         */
+        public boolean overlaps(LocalDate startDate, LocalDate endDate) {
+            return orderCount > 0 && !firstDate.isAfter(endDate) && !lastDate.isBefore(startDate);
+        }
+
+        /**
+         * @return true if every order in the partition is dated within the inclusive range.
+         */
+        public boolean isWithin(LocalDate startDate, LocalDate endDate) {
+            return orderCount > 0 && !firstDate.isBefore(startDate) && !lastDate.isAfter(endDate);
+        }
+
+        boolean matchesJournal(long size, long modifiedMillis) {
+            return journalSize == size && journalModifiedMillis == modifiedMillis;
+        }
+
+        public YearMonth getMonth() { return month; }
+        public LocalDate getFirstDate() { return firstDate; }
+        public LocalDate getLastDate() { return lastDate; }
+        public int getOrderCount() { return orderCount; }
+        public int getItemRowCount() { return itemRowCount; }
+        public int getItemQuantity() { return itemQuantity; }
+        public double getTotal() { return total; }
+        public int getVoidRecordCount() { return voidRecordCount; }
+        long getJournalSize() { return journalSize; }
+        long getJournalModifiedMillis() { return journalModifiedMillis; }
+
+        private JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("month", month.toString());
+            if (firstDate != null) json.put("firstDate", firstDate.toString());
+            if (lastDate != null) json.put("lastDate", lastDate.toString());
+            json.put("orderCount", orderCount);
+            json.put("itemRowCount", itemRowCount);
+            json.put("itemQuantity", itemQuantity);
+            json.put("total", total);
+            json.put("voidRecordCount", voidRecordCount);
+            json.put("journalSize", journalSize);
+            json.put("journalModifiedMillis", journalModifiedMillis);
+            return json;
+        }
+
+        /**
+         * A manifest written before item quantities were recorded lacks "itemQuantity"; reading it then fails
+         * and the whole manifest is rebuilt, as for any other unreadable manifest.
+         */
+        private static Entry fromJson(JSONObject json) {
+            return new Entry(
+                    YearMonth.parse(json.getString("month")),
+                    json.has("firstDate") ? LocalDate.parse(json.getString("firstDate")) : null,
+                    json.has("lastDate") ? LocalDate.parse(json.getString("lastDate")) : null,
+                    json.getInt("orderCount"),
+                    json.getInt("itemRowCount"),
+                    json.getInt("itemQuantity"),
+                    json.getDouble("total"),
+                    json.getInt("voidRecordCount"),
+                    json.getLong("journalSize"),
+                    json.getLong("journalModifiedMillis"));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.model.Order;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists placed orders off the JavaFX Application Thread.
+ * Orders are put on a bounded queue and written by a single writer thread. Each comes with the stock it
+ * reserved in the {@link StockLedger}; the reservation is committed once the order is saved and released
+ * if it could not be. Orders that arrive within a few milliseconds of each other are group-committed to the
+ * order store in one write.
+ * Each submission returns a future that completes once the order is durable, or fails if it could not be saved.
+ */
+public class OrderPersistenceService {
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final long GROUP_COMMIT_WINDOW_MILLIS = 5;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final long IDLE_POLL_MILLIS = 200;
+
+    private static final BlockingQueue<PendingOrder> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicInteger pendingCount = new AtomicInteger();
+    private static Thread writerThread;
+    private static volatile boolean running = false;
+
+    /**
+     * Queues an order for saving.
+     * @param order The order to save.
+     * @param reservation The stock reserved for the order. This service commits or releases it.
+     * @return A future completed with the order once it is on disk.
+     *         It fails with an IOException if the queue is full or the write failed.
+     */
+    public static CompletableFuture<Order> submit(Order order, StockLedger.Reservation reservation) {
+        ensureStarted();
+        PendingOrder pendingOrder = new PendingOrder(order, reservation);
+        pendingCount.incrementAndGet();
+        if (!queue.offer(pendingOrder)) {
+            pendingCount.decrementAndGet();
+            reservation.release();
+            pendingOrder.future.completeExceptionally(new IOException("Too many orders are waiting to be saved. Please try again."));
+        }
+        return pendingOrder.future;
+    }
+
+    /**
+     * @return How many submitted orders have not been written yet.
+     */
+    public static int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Stops the writer thread after every order already queued has been written.
+     */
+    public static synchronized void shutdown() {
+        if (writerThread == null) return;
+        // The writer is not interrupted: an interrupt would abort the file write in progress.
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+    }
+
+    private static synchronized void ensureStarted() {
+        if (writerThread != null) return;
+        running = true;
+        writerThread = new Thread(OrderPersistenceService::runWriter, "OrderPersistence-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private static void runWriter() {
+        List<PendingOrder> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Give orders placed at nearly the same moment a chance to share this commit.
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GROUP_COMMIT_WINDOW_MILLIS);
+                while (batch.size() < MAX_BATCH_SIZE) {
+                    PendingOrder next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Nothing interrupts this thread on purpose; commit what has been collected and carry on.
+            }
+            if (batch.isEmpty()) continue;
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private static void commit(List<PendingOrder> batch) {
+        List<Order> orders = new ArrayList<>();
+        for (PendingOrder pendingOrder : batch) {
+            orders.add(pendingOrder.order);
+        }
+        try {
+            OrderExcelUtil.saveOrders(orders);
+            for (PendingOrder pendingOrder : batch) {
+                // The stock change is journaled by the ledger's write-behind task.
+                pendingOrder.reservation.commit();
+                pendingCount.decrementAndGet();
+                pendingOrder.future.complete(pendingOrder.order);
+            }
+        } catch (Exception e) {
+            System.err.println("Error saving orders: " + e.getMessage());
+            e.printStackTrace();
+            for (PendingOrder pendingOrder : batch) {
+                pendingOrder.reservation.release();
+                pendingCount.decrementAndGet();
+                pendingOrder.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class PendingOrder {
+        private final Order order;
+        private final StockLedger.Reservation reservation;
+        private final CompletableFuture<Order> future = new CompletableFuture<>();
+
+        PendingOrder(Order order, StockLedger.Reservation reservation) {
+            this.order = order;
+            this.reservation = reservation;
+        }
+    }
+}
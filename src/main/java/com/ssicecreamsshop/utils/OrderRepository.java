@@ -0,0 +1,472 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.model.Order;
+import com.ssicecreamsshop.model.OrderItem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Process-wide, in-memory copy of the order history held in the {@link OrderJournal}.
+ * The journal is split into month partitions, and a partition is only parsed the first time a question
+ * touches it; the {@link OrderPartitionManifest} answers which partitions overlap a date range and what
+ * the totals of fully covered months are. Orders saved or deleted through this class update the
+ * in-memory copy in place. A partition is only re-read when its size or modification time no longer
+ * matches what this class last saw, i.e. when something outside the application changed it.
+ * Alongside the orders each partition keeps a per-day index of running totals, so daily and date-range
+ * totals, including the journal store's {@link OrderStore#aggregate}, are answered without walking the order history.
+ * Deletes are logical: a void record is appended and the order disappears from memory at once,
+ * while a background job compacts the journal later so void records do not pile up.
+ */
+public class OrderRepository {
+
+    private static final long COMPACTION_INTERVAL_MINUTES = 15;
+
+    private static final TreeMap<YearMonth, Partition> loadedPartitions = new TreeMap<>();
+    private static TreeMap<YearMonth, OrderPartitionManifest.Entry> manifest = new TreeMap<>();
+    private static Path loadedDirectory;
+    // False while the manifest on disk lags the one in memory; the next refresh tries to save it again.
+    private static boolean manifestSaved = true;
+
+    private static ScheduledExecutorService compactionScheduler;
+
+    /**
+     * Appends an order to the journal and to the in-memory history.
+     * @param order The order to record.
+     * @throws IOException if the journal could not be written.
+     */
+    public static synchronized void append(Order order) throws IOException {
+        appendAll(List.of(order));
+    }
+
+    /**
+     * Appends several orders to the journal with one write per month they fall in, and to the in-memory history.
+     * @param orders The orders to record, oldest first.
+     * @throws IOException if the journal could not be written.
+     */
+    public static synchronized void appendAll(List<Order> orders) throws IOException {
+        refreshManifest();
+        String fingerprintBefore = journalFingerprint();
+        Map<YearMonth, List<Order>> ordersByMonth = new TreeMap<>();
+        for (Order order : orders) {
+            ordersByMonth.computeIfAbsent(OrderJournal.partitionOf(order.getCreatedDateTime()), m -> new ArrayList<>()).add(order);
+        }
+        try {
+            for (Map.Entry<YearMonth, List<Order>> monthOrders : ordersByMonth.entrySet()) {
+                Partition partition = partition(monthOrders.getKey());
+                OrderJournal.appendAll(monthOrders.getKey(), monthOrders.getValue());
+                for (Order order : monthOrders.getValue()) {
+                    partition.index(order);
+                }
+                partition.rememberJournalStamp();
+                manifest.put(partition.month, partition.toManifestEntry());
+            }
+        } finally {
+            saveManifest();
+        }
+        OrderColumnStore.onOrdersAppended(orders, fingerprintBefore, journalFingerprint());
+    }
+
+    /**
+     * Voids an order: a void record is appended to its month's journal and the order is removed from
+     * the in-memory history straight away. The journal itself is cleaned up by {@link #compact()}.
+     * @param orderId The ID of the order to remove.
+     * @param createdDate The day the order was created, which determines its partition.
+     * @return true if the order existed and was removed, false if it was not found.
+     * @throws IOException if the void record could not be written.
+     */
+    public static synchronized boolean delete(String orderId, LocalDate createdDate) throws IOException {
+        refreshManifest();
+        YearMonth month = YearMonth.from(createdDate);
+        if (!manifest.containsKey(month)) return false;
+        Partition partition = partition(month);
+        Order order = partition.ordersById.get(orderId);
+        if (order == null) return false;
+
+        String fingerprintBefore = journalFingerprint();
+        OrderJournal.appendVoid(month, orderId);
+        partition.unindex(order);
+        partition.voidRecordCount++;
+        partition.rememberJournalStamp();
+        manifest.put(month, partition.toManifestEntry());
+        saveManifest();
+        OrderColumnStore.onOrderVoided(order, fingerprintBefore, journalFingerprint());
+        return true;
+    }
+
+    /**
+     * Rewrites every partition that contains void records with only its live orders,
+     * dropping voided orders and their void records. Partitions without void records are not touched.
+     * @throws IOException if a partition could not be rewritten.
+     */
+    public static synchronized void compact() throws IOException {
+        refreshManifest();
+        String fingerprintBefore = journalFingerprint();
+        int droppedVoidRecords = 0;
+        try {
+            for (OrderPartitionManifest.Entry entry : new ArrayList<>(manifest.values())) {
+                if (entry.getVoidRecordCount() == 0) continue;
+                Partition partition = partition(entry.getMonth());
+                OrderJournal.rewrite(partition.month, new ArrayList<>(partition.ordersById.values()));
+                droppedVoidRecords += partition.voidRecordCount;
+                partition.voidRecordCount = 0;
+                partition.rememberJournalStamp();
+                manifest.put(partition.month, partition.toManifestEntry());
+            }
+        } finally {
+            if (droppedVoidRecords > 0) {
+                saveManifest();
+                OrderColumnStore.onJournalRewritten(fingerprintBefore, journalFingerprint());
+                System.out.println("Compacted order journal: dropped " + droppedVoidRecords + " void records.");
+            }
+        }
+    }
+
+    /**
+     * Starts a background job that compacts the journal every few minutes once it contains void records.
+     */
+    public static synchronized void startBackgroundCompaction() {
+        if (compactionScheduler != null) return;
+        compactionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("OrderJournal-Compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactionScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("Error compacting order journal: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, COMPACTION_INTERVAL_MINUTES, COMPACTION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops the background compaction job. Void records left in the journal are compacted on a later run.
+     */
+    public static synchronized void stopBackgroundCompaction() {
+        if (compactionScheduler != null) {
+            compactionScheduler.shutdownNow();
+            compactionScheduler = null;
+        }
+    }
+
+    /**
+     * @return A snapshot of every recorded order, oldest month first and in recording order within a month.
+     * @throws IOException if a partition had to be read and could not be.
+     */
+    public static synchronized List<Order> getOrders() throws IOException {
+        List<Order> orders = new ArrayList<>();
+        forEach(orders::add);
+        return orders;
+    }
+
+    /**
+     * Hands every recorded order to the consumer, oldest month first.
+     * @param orderConsumer Called once per order.
+     * @throws IOException if a partition had to be read and could not be.
+     */
+    public static synchronized void forEach(Consumer<Order> orderConsumer) throws IOException {
+        refreshManifest();
+        for (YearMonth month : manifest.keySet()) {
+            for (Order order : partition(month).ordersById.values()) {
+                orderConsumer.accept(order);
+            }
+        }
+    }
+
+    /**
+     * Hands the orders created within a date range to the consumer, reading only the partitions that overlap it.
+     * @param startDate The first day of the range, inclusive.
+     * @param endDate The last day of the range, inclusive.
+     * @param orderConsumer Called once per matching order.
+     * @throws IOException if a partition had to be read and could not be.
+     */
+    public static synchronized void forEach(LocalDate startDate, LocalDate endDate, Consumer<Order> orderConsumer) throws IOException {
+        refreshManifest();
+        for (OrderPartitionManifest.Entry entry : manifest.values()) {
+            if (!entry.overlaps(startDate, endDate)) continue;
+            boolean wholePartition = entry.isWithin(startDate, endDate);
+            for (Order order : partition(entry.getMonth()).ordersById.values()) {
+                LocalDate orderDate = order.getCreatedDateTime().toLocalDate();
+                if (wholePartition || (!orderDate.isBefore(startDate) && !orderDate.isAfter(endDate))) {
+                    orderConsumer.accept(order);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if any partition holds an order, answered from the manifest without reading the partitions.
+     * @throws IOException if the partitions could not be listed.
+     */
+    public static synchronized boolean hasOrders() throws IOException {
+        refreshManifest();
+        for (OrderPartitionManifest.Entry entry : manifest.values()) {
+            if (entry.getOrderCount() > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return A snapshot of the IDs of every recorded order.
+     * @throws IOException if a partition had to be read and could not be.
+     */
+    public static synchronized Set<String> getOrderIds() throws IOException {
+        Set<String> orderIds = new HashSet<>();
+        forEach(order -> orderIds.add(order.getOrderId()));
+        return orderIds;
+    }
+
+    /**
+     * @param date A calendar day.
+     * @return The sales total, order count and item quantity recorded for that day.
+     * @throws IOException if the day's partition had to be read and could not be.
+     */
+    public static synchronized DailyTotal getDailyTotal(LocalDate date) throws IOException {
+        refreshManifest();
+        YearMonth month = YearMonth.from(date);
+        if (!manifest.containsKey(month)) return DailyTotal.EMPTY;
+        return partition(month).dailyTotals.getOrDefault(date, DailyTotal.EMPTY);
+    }
+
+    /**
+     * Totals a date range. Months that lie entirely inside the range are taken from the manifest without
+     * reading their partition; only partially covered months are summed from their per-day index.
+     * @param startDate The first day of the range, inclusive.
+     * @param endDate The last day of the range, inclusive.
+     * @return The sales total, order count and item quantity recorded over the range.
+     * @throws IOException if a partition had to be read and could not be.
+     */
+    public static synchronized DailyTotal getTotalForRange(LocalDate startDate, LocalDate endDate) throws IOException {
+        refreshManifest();
+        DailyTotal rangeTotal = DailyTotal.EMPTY;
+        for (OrderPartitionManifest.Entry entry : manifest.values()) {
+            if (!entry.overlaps(startDate, endDate)) continue;
+            if (entry.isWithin(startDate, endDate)) {
+                rangeTotal = rangeTotal.plus(entry.getTotal(), entry.getOrderCount(), entry.getItemQuantity());
+                continue;
+            }
+            for (DailyTotal dailyTotal : partition(entry.getMonth()).dailyTotals.subMap(startDate, true, endDate, true).values()) {
+                rangeTotal = rangeTotal.plus(dailyTotal);
+            }
+        }
+        return rangeTotal;
+    }
+
+    /**
+     * Loads the current month's orders and the partition manifest ahead of time, so the first
+     * screen that needs orders does not pay for parsing the journal.
+     */
+    public static void preload() {
+        try {
+            getDailyTotal(LocalDate.now());
+        } catch (IOException e) {
+            System.err.println("Could not preload order history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Identifies the current state of the journal files, so derived stores such as the
+     * {@link OrderColumnStore} can tell whether they are still in step with it.
+     * @return A string that changes whenever any partition's size or modification time changes.
+     * @throws IOException if the partitions could not be listed.
+     */
+    static synchronized String getJournalFingerprint() throws IOException {
+        refreshManifest();
+        return journalFingerprint();
+    }
+
+    private static String journalFingerprint() {
+        StringBuilder fingerprint = new StringBuilder();
+        for (OrderPartitionManifest.Entry entry : manifest.values()) {
+            fingerprint.append(entry.getMonth()).append(':').append(entry.getJournalSize()).append(':').append(entry.getJournalModifiedMillis()).append(';');
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Brings the manifest in line with the partitions on disk. If the data directory changed, everything
+     * cached is dropped. A partition whose manifest entry is missing or no longer matches its journal file
+     * is re-read and re-summarised; the manifest is saved if any entry changed.
+     */
+    private static void refreshManifest() throws IOException {
+        TreeSet<YearMonth> months = OrderJournal.listPartitions();
+        Path directory = OrderJournal.getPartitionDirectory();
+        if (!directory.equals(loadedDirectory)) {
+            loadedPartitions.clear();
+            manifest = OrderPartitionManifest.load();
+            loadedDirectory = directory;
+        }
+
+        boolean changed = manifest.keySet().retainAll(months);
+        loadedPartitions.keySet().retainAll(months);
+        for (YearMonth month : months) {
+            OrderPartitionManifest.Entry entry = manifest.get(month);
+            BasicFileAttributes attributes = Files.readAttributes(OrderJournal.getPartitionPath(month), BasicFileAttributes.class);
+            if (entry != null && entry.matchesJournal(attributes.size(), attributes.lastModifiedTime().toMillis())) continue;
+
+            manifest.put(month, partition(month).toManifestEntry());
+            changed = true;
+        }
+        if (changed || !manifestSaved) saveManifest();
+    }
+
+    /**
+     * Saves the manifest. It only summarises the journal and can always be rebuilt from it, so a failure is logged
+     * rather than thrown: the orders it describes are already safely journaled and must not be reported as lost.
+     * Entries left stale on disk no longer match their journal files and are re-summarised when next loaded.
+     */
+    private static void saveManifest() {
+        try {
+            OrderPartitionManifest.save(manifest);
+            manifestSaved = true;
+        } catch (IOException e) {
+            manifestSaved = false;
+            System.err.println("Error saving the order partition manifest; it will be rebuilt: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the in-memory copy of a partition, reading it if it has not been read yet or has changed on disk.
+     */
+    private static Partition partition(YearMonth month) throws IOException {
+        Partition cached = loadedPartitions.get(month);
+        if (cached != null && cached.stampMatches()) return cached;
+
+        Partition partition = new Partition(month);
+        OrderJournal.replay(month, partition::index, orderId -> {
+            Order voided = partition.ordersById.get(orderId);
+            if (voided != null) partition.unindex(voided);
+            partition.voidRecordCount++;
+        });
+        partition.rememberJournalStamp();
+        loadedPartitions.put(month, partition);
+        System.out.println("Loaded " + partition.ordersById.size() + " orders from " + OrderJournal.getPartitionPath(month));
+        return partition;
+    }
+
+    /**
+     * The orders of one month, with their per-day totals and the journal file stamp they were read at.
+     */
+    private static class Partition {
+        private final YearMonth month;
+        private final Map<String, Order> ordersById = new LinkedHashMap<>();
+        private final TreeMap<LocalDate, DailyTotal> dailyTotals = new TreeMap<>();
+        private int voidRecordCount = 0;
+        private long journalSize = -1;
+        private long journalModifiedMillis = -1;
+
+        Partition(YearMonth month) {
+            this.month = month;
+        }
+
+        void index(Order order) {
+            Order replaced = ordersById.put(order.getOrderId(), order);
+            if (replaced != null) unindexTotals(replaced);
+            dailyTotals.merge(order.getCreatedDateTime().toLocalDate(), DailyTotal.EMPTY.plus(order.getOrderTotalAmount(), 1, itemQuantity(order)),
+                    DailyTotal::plus);
+        }
+
+        void unindex(Order order) {
+            ordersById.remove(order.getOrderId());
+            unindexTotals(order);
+        }
+
+        private void unindexTotals(Order order) {
+            LocalDate date = order.getCreatedDateTime().toLocalDate();
+            DailyTotal remaining = dailyTotals.getOrDefault(date, DailyTotal.EMPTY).plus(-order.getOrderTotalAmount(), -1, -itemQuantity(order));
+            if (remaining.getOrderCount() <= 0) dailyTotals.remove(date);
+            else dailyTotals.put(date, remaining);
+        }
+
+        boolean stampMatches() throws IOException {
+            Path journalPath = OrderJournal.getPartitionPath(month);
+            if (!Files.exists(journalPath)) return journalSize == -1;
+            BasicFileAttributes attributes = Files.readAttributes(journalPath, BasicFileAttributes.class);
+            return attributes.size() == journalSize && attributes.lastModifiedTime().toMillis() == journalModifiedMillis;
+        }
+
+        void rememberJournalStamp() throws IOException {
+            Path journalPath = OrderJournal.getPartitionPath(month);
+            if (Files.exists(journalPath)) {
+                BasicFileAttributes attributes = Files.readAttributes(journalPath, BasicFileAttributes.class);
+                journalSize = attributes.size();
+                journalModifiedMillis = attributes.lastModifiedTime().toMillis();
+            } else {
+                journalSize = -1;
+                journalModifiedMillis = -1;
+            }
+        }
+
+        private static int itemQuantity(Order order) {
+            int quantity = 0;
+            for (OrderItem item : order.getOrderItems()) {
+                quantity += item.getQuantity();
+            }
+            return quantity;
+        }
+
+        OrderPartitionManifest.Entry toManifestEntry() {
+            DailyTotal monthTotal = DailyTotal.EMPTY;
+            for (DailyTotal dailyTotal : dailyTotals.values()) {
+                monthTotal = monthTotal.plus(dailyTotal);
+            }
+            int itemRowCount = 0;
+            for (Order order : ordersById.values()) {
+                itemRowCount += order.getOrderItems().size();
+            }
+            return new OrderPartitionManifest.Entry(month,
+                    dailyTotals.isEmpty() ? null : dailyTotals.firstKey(),
+                    dailyTotals.isEmpty() ? null : dailyTotals.lastKey(),
+                    ordersById.size(), itemRowCount, monthTotal.getItemQuantity(), monthTotal.getTotal(), voidRecordCount, journalSize, journalModifiedMillis);
+        }
+    }
+
+    /**
+     * Immutable sales total, order count and item quantity for a day (or a range of days).
+     */
+    public static class DailyTotal {
+        static final DailyTotal EMPTY = new DailyTotal(0, 0, 0);
+
+        private final double total;
+        private final int orderCount;
+        private final int itemQuantity;
+
+        private DailyTotal(double total, int orderCount, int itemQuantity) {
+            this.total = total;
+            this.orderCount = orderCount;
+            this.itemQuantity = itemQuantity;
+        }
+
+        DailyTotal plus(double amount, int orders, int items) {
+            return new DailyTotal(total + amount, orderCount + orders, itemQuantity + items);
+        }
+
+        DailyTotal plus(DailyTotal other) {
+            return plus(other.total, other.orderCount, other.itemQuantity);
+        }
+
+        public double getTotal() { return total; }
+        public int getOrderCount() { return orderCount; }
+        public int getItemQuantity() { return itemQuantity; }
+    }
+}
@@ -0,0 +1,219 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.model.Order;
+import com.ssicecreamsshop.model.OrderItem;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for order workbooks. Instead of building the whole workbook in memory,
+ * .xlsx files are read with POI's event model (XSSFReader plus a read-only shared-strings table)
+ * and each {@link Order} of 'orders.xlsx' is handed to the caller as soon as its last row has been read.
+ * Legacy .xls files are not OOXML and fall back to the regular workbook API.
+ */
+public class OrderSheetReader {
+
+    private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Receives the formatted cell values of one data row. Missing cells are empty strings.
+     */
+    public interface RowHandler {
+        void handleRow(int rowNum, List<String> cells);
+    }
+
+    /**
+     * Streams orders from a workbook laid out like 'orders.xlsx'
+     * (Order ID, Item Name, Quantity, Unit Price, Created Date, Created Time, ...).
+     * Rows belonging to one order are expected to be contiguous, as they are when written by this application.
+     * @param file The workbook to read.
+     * @param orderConsumer Called once per order, in file order.
+     * @throws IOException if the file could not be read.
+     */
+    public static void readOrdersWorkbook(File file, Consumer<Order> orderConsumer) throws IOException {
+        OrderAccumulator accumulator = new OrderAccumulator(orderConsumer);
+        readFirstSheet(file, (rowNum, cells) -> {
+            String orderId = cell(cells, 0);
+            if (orderId.isEmpty()) return;
+            LocalDateTime createdDateTime;
+            try {
+                createdDateTime = LocalDateTime.parse(cell(cells, 4) + " " + cell(cells, 5), DATETIME_FORMATTER);
+            } catch (Exception e) {
+                createdDateTime = LocalDateTime.MIN;
+            }
+            OrderItem item = new OrderItem(cell(cells, 1), (int) Double.parseDouble(cell(cells, 2)), Double.parseDouble(cell(cells, 3)));
+            accumulator.add(orderId, createdDateTime, item);
+        });
+        accumulator.flush();
+    }
+
+    /**
+     * Reads the orders of an orders report as written by {@link ExcelExportUtil#exportOrdersToExcel}
+     * (Order ID, Created Date &amp; Time, Item Name, Quantity, Unit Price, ...).
+     * A report may have been sorted or edited by hand, so rows are grouped by order ID across the whole sheet
+     * and the orders are only handed over once it has been read.
+     * @param file The report to read.
+     * @param orderConsumer Called once per order, in the order each ID first appears.
+     * @throws IOException if the file could not be read.
+     */
+    public static void readOrdersReport(File file, Consumer<Order> orderConsumer) throws IOException {
+        Map<String, Order> ordersById = new LinkedHashMap<>();
+        readFirstSheet(file, (rowNum, cells) -> {
+            String orderId = cell(cells, 0);
+            if (orderId.isEmpty()) return;
+            LocalDateTime createdDateTime = LocalDateTime.parse(cell(cells, 1), DATETIME_FORMATTER);
+            OrderItem item = new OrderItem(cell(cells, 2), (int) Double.parseDouble(cell(cells, 3)), Double.parseDouble(cell(cells, 4)));
+            ordersById.computeIfAbsent(orderId, id -> new Order(id, createdDateTime, new ArrayList<>()))
+                    .getOrderItems().add(item);
+        });
+        for (Order order : ordersById.values()) {
+            // Recomputes the total now that all of the order's items are in.
+            order.setOrderItems(order.getOrderItems());
+            orderConsumer.accept(order);
+        }
+    }
+
+    /**
+     * Streams every data row (the header row is skipped) of the first sheet of a workbook.
+     * @param file The workbook to read.
+     * @param rowHandler Called once per data row.
+     * @throws IOException if the file could not be read or parsed.
+     */
+    public static void readFirstSheet(File file, RowHandler rowHandler) throws IOException {
+        if (FileMagic.valueOf(file) == FileMagic.OOXML) {
+            readXlsxFirstSheet(file, rowHandler);
+        } else {
+            readWorkbookFirstSheet(file, rowHandler);
+        }
+    }
+
+    private static void readXlsxFirstSheet(File file, RowHandler rowHandler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) return;
+
+            try (InputStream sheetStream = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, sharedStrings, new RowCollector(rowHandler), new DataFormatter(), false));
+                parser.parse(new InputSource(sheetStream));
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not read " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void readWorkbookFirstSheet(File file, RowHandler rowHandler) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file); Workbook workbook = WorkbookFactory.create(fis)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            DataFormatter dataFormatter = new DataFormatter();
+            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+                Row row = sheet.getRow(i);
+                if (row == null) continue;
+                List<String> cells = new ArrayList<>();
+                for (int c = 0; c < row.getLastCellNum(); c++) {
+                    cells.add(dataFormatter.formatCellValue(row.getCell(c)).trim());
+                }
+                rowHandler.handleRow(i, cells);
+            }
+        }
+    }
+
+    private static String cell(List<String> cells, int index) {
+        return index < cells.size() ? cells.get(index) : "";
+    }
+
+    /**
+     * Collects the cells reported by the SAX handler into one list per row.
+     */
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler rowHandler;
+        private final List<String> cells = new ArrayList<>();
+
+        RowCollector(RowHandler rowHandler) {
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum == 0) return; // Header row
+            rowHandler.handleRow(rowNum, new ArrayList<>(cells));
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            while (cells.size() < column) cells.add("");
+            cells.add(formattedValue == null ? "" : formattedValue.trim());
+        }
+    }
+
+    /**
+     * Groups consecutive rows with the same order ID into one {@link Order} and emits it
+     * as soon as a row for a different order (or the end of the sheet) is reached.
+     */
+    private static class OrderAccumulator {
+        private final Consumer<Order> orderConsumer;
+        private String currentOrderId;
+        private LocalDateTime currentCreatedDateTime;
+        private List<OrderItem> currentItems = new ArrayList<>();
+
+        OrderAccumulator(Consumer<Order> orderConsumer) {
+            this.orderConsumer = orderConsumer;
+        }
+
+        void add(String orderId, LocalDateTime createdDateTime, OrderItem item) {
+            if (!orderId.equals(currentOrderId)) {
+                flush();
+                currentOrderId = orderId;
+                currentCreatedDateTime = createdDateTime;
+            }
+            currentItems.add(item);
+        }
+
+        void flush() {
+            if (currentOrderId != null && !currentItems.isEmpty()) {
+                orderConsumer.accept(new Order(currentOrderId, currentCreatedDateTime, currentItems));
+            }
+            currentOrderId = null;
+            currentItems = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.model.Order;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Where placed orders are kept. The application talks to the store selected in
+ * {@link com.ssicecreamsshop.config.ConfigManager#getOrderStoreType()} through {@link OrderExcelUtil#getOrderStore()}.
+ * Date ranges are inclusive calendar days.
+ */
+public interface OrderStore {
+
+    /**
+     * Records orders. They are durable when this method returns.
+     * @param orders The orders to record, oldest first.
+     * @throws IOException if the orders could not be recorded.
+     */
+    void append(List<Order> orders) throws IOException;
+
+    /**
+     * @return Every recorded order, oldest first.
+     * @throws IOException if the orders could not be read.
+     */
+    List<Order> loadAll() throws IOException;
+
+    /**
+     * Hands the orders created within a range to the consumer as they are read, without collecting them first.
+     * @param startDate The first day of the range.
+     * @param endDate The last day of the range.
+     * @param orderConsumer Called once per order.
+     * @throws IOException if the orders could not be read.
+     */
+    void forEach(LocalDate startDate, LocalDate endDate, Consumer<Order> orderConsumer) throws IOException;
+
+    /**
+     * @return true if at least one order is recorded. Cheap: it does not read the order history.
+     * @throws IOException if the store could not be read.
+     */
+    boolean hasOrders() throws IOException;
+
+    /**
+     * @return The IDs of every recorded order.
+     * @throws IOException if the store could not be read.
+     */
+    Set<String> getOrderIds() throws IOException;
+
+    /**
+     * Removes an order.
+     * @param orderId The ID of the order to remove.
+     * @param createdDate The day the order was created.
+     * @return true if the order existed and was removed, false if it was not found.
+     * @throws IOException if the removal could not be recorded.
+     */
+    boolean delete(String orderId, LocalDate createdDate) throws IOException;
+
+    /**
+     * @param startDate The first day of the range.
+     * @param endDate The last day of the range.
+     * @return The sales total, order count and item quantity for the range.
+     * @throws IOException if the store could not be read.
+     */
+    Totals aggregate(LocalDate startDate, LocalDate endDate) throws IOException;
+
+    /**
+     * @param startDate The first day of the range.
+     * @param endDate The last day of the range.
+     * @return Quantity and sales per menu item over the range, highest sales first.
+     * @throws IOException if the store could not be read.
+     */
+    List<ItemTotals> aggregateByItem(LocalDate startDate, LocalDate endDate) throws IOException;
+
+    /**
+     * @param startDate The first day of the range.
+     * @param endDate The last day of the range.
+     * @return 24 sales totals for the range, index 0 covering 00:00-00:59.
+     * @throws IOException if the store could not be read.
+     */
+    double[] aggregateByHour(LocalDate startDate, LocalDate endDate) throws IOException;
+
+    /**
+     * Does any expensive first-use work (loading, opening, migrating) ahead of time. Called on a background thread at startup.
+     */
+    void preload();
+
+    /**
+     * Releases any resources held by the store.
+     */
+    void close();
+
+    /**
+     * Sales total, order count and number of items sold over a period.
+     */
+    final class Totals {
+        private final double total;
+        private final int orderCount;
+        private final int itemQuantity;
+
+        public Totals(double total, int orderCount, int itemQuantity) {
+            this.total = total;
+            this.orderCount = orderCount;
+            this.itemQuantity = itemQuantity;
+        }
+
+        public double getTotal() { return total; }
+        public int getOrderCount() { return orderCount; }
+        public int getItemQuantity() { return itemQuantity; }
+    }
+
+    /**
+     * Quantity sold and sales total of one menu item over a period.
+     */
+    final class ItemTotals {
+        private final String itemName;
+        private final int quantity;
+        private final double total;
+
+        public ItemTotals(String itemName, int quantity, double total) {
+            this.itemName = itemName;
+            this.quantity = quantity;
+            this.total = total;
+        }
+
+        public String getItemName() { return itemName; }
+        public int getQuantity() { return quantity; }
+        public double getTotal() { return total; }
+    }
+}
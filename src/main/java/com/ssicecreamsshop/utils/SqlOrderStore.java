@@ -0,0 +1,360 @@
+package com.ssicecreamsshop.utils;
+
+import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.Order;
+import com.ssicecreamsshop.model.OrderItem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * {@link OrderStore} kept in an embedded, file-based H2 database in the 'orders-db' folder.
+ * Orders are stored in an 'orders' table with a primary key on the order ID and an index on the creation time,
+ * so lookups by ID and date-range loads and totals are index seeks; their items are in 'order_items'.
+ * <p>
+ * When the database is created it is seeded with the orders already in the {@link OrderJournal}.
+ * Orders placed while this store is selected are not journaled; switching stores in the configuration
+ * copies them across, see {@link OrderExcelUtil#getOrderStore()}.
+ * An order whose creation time could not be read ({@link LocalDateTime#MIN}) is stored with a NULL time and
+ * only falls within ranges that are open at the start.
+ */
+public class SqlOrderStore implements OrderStore {
+
+    // Bounds for open-ended ranges (LocalDate.MIN / MAX), kept within what a SQL TIMESTAMP can hold.
+    private static final LocalDateTime EARLIEST = LocalDate.of(1, 1, 1).atStartOfDay();
+    private static final LocalDateTime LATEST = LocalDate.of(9999, 12, 31).atStartOfDay();
+
+    private Connection connection;
+    private String openedPath;
+
+    @Override
+    public synchronized void append(List<Order> orders) throws IOException {
+        if (orders.isEmpty()) return;
+        try {
+            Connection c = connection();
+            try {
+                insertOrders(c, orders);
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw databaseError("Could not save orders", e);
+        }
+    }
+
+    @Override
+    public synchronized List<Order> loadAll() throws IOException {
+        List<Order> orders = new ArrayList<>();
+        forEach(LocalDate.MIN, LocalDate.MAX, orders::add);
+        return orders;
+    }
+
+    @Override
+    public synchronized void forEach(LocalDate startDate, LocalDate endDate, Consumer<Order> orderConsumer) throws IOException {
+        String sql = "SELECT o.order_id, o.created_at, i.item_name, i.quantity, i.unit_price"
+                + " FROM orders o LEFT JOIN order_items i ON i.order_id = o.order_id"
+                + " WHERE " + inRange(startDate) + " ORDER BY o.created_at, o.order_id, i.line_no";
+        try (PreparedStatement statement = connection().prepareStatement(sql)) {
+            bindRange(statement, 1, startDate, endDate);
+            readOrders(statement, orderConsumer);
+        } catch (SQLException e) {
+            throw databaseError("Could not load orders", e);
+        }
+    }
+
+    @Override
+    public synchronized boolean hasOrders() throws IOException {
+        try (Statement statement = connection().createStatement();
+             ResultSet rs = statement.executeQuery("SELECT 1 FROM orders LIMIT 1")) {
+            return rs.next();
+        } catch (SQLException e) {
+            throw databaseError("Could not check for orders", e);
+        }
+    }
+
+    @Override
+    public synchronized Set<String> getOrderIds() throws IOException {
+        Set<String> orderIds = new HashSet<>();
+        try (Statement statement = connection().createStatement();
+             ResultSet rs = statement.executeQuery("SELECT order_id FROM orders")) {
+            while (rs.next()) orderIds.add(rs.getString(1));
+        } catch (SQLException e) {
+            throw databaseError("Could not list order IDs", e);
+        }
+        return orderIds;
+    }
+
+    @Override
+    public synchronized boolean delete(String orderId, LocalDate createdDate) throws IOException {
+        // Order IDs are unique, so the date is not needed to find the row; items go with it through ON DELETE CASCADE.
+        try {
+            Connection c = connection();
+            try (PreparedStatement statement = c.prepareStatement("DELETE FROM orders WHERE order_id = ?")) {
+                statement.setString(1, orderId);
+                int deleted = statement.executeUpdate();
+                c.commit();
+                return deleted > 0;
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw databaseError("Could not delete order " + orderId, e);
+        }
+    }
+
+    @Override
+    public synchronized Totals aggregate(LocalDate startDate, LocalDate endDate) throws IOException {
+        String ordersInRange = " FROM orders o WHERE " + inRange(startDate);
+        String sql = "SELECT COALESCE(SUM(o.total_amount), 0), COUNT(*),"
+                + " COALESCE((SELECT SUM(i.quantity) FROM order_items i WHERE i.order_id IN (SELECT o.order_id" + ordersInRange + ")), 0)"
+                + ordersInRange;
+        try (PreparedStatement statement = connection().prepareStatement(sql)) {
+            bindRange(statement, bindRange(statement, 1, startDate, endDate), startDate, endDate);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return new Totals(rs.getDouble(1), rs.getInt(2), rs.getInt(3));
+            }
+        } catch (SQLException e) {
+            throw databaseError("Could not total orders", e);
+        }
+    }
+
+    @Override
+    public synchronized List<ItemTotals> aggregateByItem(LocalDate startDate, LocalDate endDate) throws IOException {
+        String sql = "SELECT i.item_name, SUM(i.quantity), SUM(i.quantity * i.unit_price)"
+                + " FROM orders o JOIN order_items i ON i.order_id = o.order_id"
+                + " WHERE " + inRange(startDate) + " GROUP BY i.item_name ORDER BY 3 DESC";
+        List<ItemTotals> itemTotals = new ArrayList<>();
+        try (PreparedStatement statement = connection().prepareStatement(sql)) {
+            bindRange(statement, 1, startDate, endDate);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) itemTotals.add(new ItemTotals(rs.getString(1), rs.getInt(2), rs.getDouble(3)));
+            }
+        } catch (SQLException e) {
+            throw databaseError("Could not total orders by item", e);
+        }
+        return itemTotals;
+    }
+
+    @Override
+    public synchronized double[] aggregateByHour(LocalDate startDate, LocalDate endDate) throws IOException {
+        String sql = "SELECT HOUR(o.created_at), SUM(o.total_amount) FROM orders o WHERE " + inRange(startDate) + " GROUP BY HOUR(o.created_at)";
+        double[] totals = new double[24];
+        try (PreparedStatement statement = connection().prepareStatement(sql)) {
+            bindRange(statement, 1, startDate, endDate);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    // Orders with no known time have no hour and are left out.
+                    if (rs.getObject(1) != null) totals[rs.getInt(1)] = rs.getDouble(2);
+                }
+            }
+        } catch (SQLException e) {
+            throw databaseError("Could not total orders by hour", e);
+        }
+        return totals;
+    }
+
+    @Override
+    public synchronized void preload() {
+        try {
+            connection();
+        } catch (SQLException | IOException e) {
+            System.err.println("Could not open the order database: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing the order database: " + e.getMessage());
+        }
+        connection = null;
+        openedPath = null;
+    }
+
+    /**
+     * Opens the database for the current data folder, creating and seeding it on first use.
+     */
+    private Connection connection() throws SQLException, IOException {
+        String path = ConfigManager.getOrdersDatabasePath();
+        if (connection != null && path.equals(openedPath)) return connection;
+        close();
+
+        Path databaseDirectory = Paths.get(path).getParent();
+        if (!Files.exists(databaseDirectory)) Files.createDirectories(databaseDirectory);
+        Connection c = DriverManager.getConnection("jdbc:h2:file:" + path);
+        try {
+            c.setAutoCommit(false);
+            createSchema(c);
+            connection = c;
+            openedPath = path;
+            return c;
+        } catch (SQLException | IOException e) {
+            c.close();
+            throw e;
+        }
+    }
+
+    private static void createSchema(Connection c) throws SQLException, IOException {
+        boolean created;
+        try (Statement statement = c.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'ORDERS'")) {
+                rs.next();
+                created = rs.getInt(1) == 0;
+            }
+            if (!created) {
+                migrateUnknownCreationTimes(c, statement);
+                return;
+            }
+            statement.execute("CREATE TABLE orders ("
+                    + "order_id VARCHAR(255) PRIMARY KEY, "
+                    + "created_at TIMESTAMP, "
+                    + "total_amount DOUBLE PRECISION NOT NULL)");
+            statement.execute("CREATE INDEX idx_orders_created_at ON orders(created_at)");
+            statement.execute("CREATE TABLE order_items ("
+                    + "order_id VARCHAR(255) NOT NULL, "
+                    + "line_no INT NOT NULL, "
+                    + "item_name VARCHAR(255) NOT NULL, "
+                    + "quantity INT NOT NULL, "
+                    + "unit_price DOUBLE PRECISION NOT NULL, "
+                    + "PRIMARY KEY (order_id, line_no), "
+                    + "FOREIGN KEY (order_id) REFERENCES orders(order_id) ON DELETE CASCADE)");
+        }
+        try {
+            List<Order> journaledOrders = OrderRepository.getOrders();
+            insertOrders(c, journaledOrders);
+            c.commit();
+            System.out.println("Created order database with " + journaledOrders.size() + " order(s) from the order journal.");
+        } catch (SQLException | IOException e) {
+            c.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Databases created before unknown creation times were stored as NULL have a NOT NULL column
+     * and may hold such times as far-past timestamps.
+     */
+    private static void migrateUnknownCreationTimes(Connection c, Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("SELECT IS_NULLABLE FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'ORDERS' AND COLUMN_NAME = 'CREATED_AT'")) {
+            if (!rs.next() || "YES".equals(rs.getString(1))) return;
+        }
+        statement.execute("ALTER TABLE orders ALTER COLUMN created_at DROP NOT NULL");
+        try (PreparedStatement unknownTimes = c.prepareStatement("UPDATE orders SET created_at = NULL WHERE created_at < ?")) {
+            unknownTimes.setObject(1, EARLIEST);
+            unknownTimes.executeUpdate();
+        }
+        c.commit();
+    }
+
+    /**
+     * Writes orders with batched statements inside the caller's transaction. An order whose ID is already
+     * stored replaces the earlier one, as it does in the journal.
+     */
+    private static void insertOrders(Connection c, List<Order> orders) throws SQLException {
+        try (PreparedStatement deleteItems = c.prepareStatement("DELETE FROM order_items WHERE order_id = ?");
+             PreparedStatement mergeOrder = c.prepareStatement(
+                     "MERGE INTO orders (order_id, created_at, total_amount) KEY (order_id) VALUES (?, ?, ?)");
+             PreparedStatement insertItem = c.prepareStatement(
+                     "INSERT INTO order_items (order_id, line_no, item_name, quantity, unit_price) VALUES (?, ?, ?, ?, ?)")) {
+            for (Order order : orders) {
+                deleteItems.setString(1, order.getOrderId());
+                deleteItems.addBatch();
+                mergeOrder.setString(1, order.getOrderId());
+                LocalDateTime createdDateTime = order.getCreatedDateTime();
+                if (createdDateTime.isBefore(EARLIEST)) mergeOrder.setNull(2, Types.TIMESTAMP);
+                else mergeOrder.setObject(2, createdDateTime);
+                mergeOrder.setDouble(3, order.getOrderTotalAmount());
+                mergeOrder.addBatch();
+                int lineNo = 0;
+                for (OrderItem item : order.getOrderItems()) {
+                    insertItem.setString(1, order.getOrderId());
+                    insertItem.setInt(2, lineNo++);
+                    insertItem.setString(3, item.getItemName());
+                    insertItem.setInt(4, item.getQuantity());
+                    insertItem.setDouble(5, item.getUnitPrice());
+                    insertItem.addBatch();
+                }
+            }
+            deleteItems.executeBatch();
+            mergeOrder.executeBatch();
+            insertItem.executeBatch();
+        }
+    }
+
+    /**
+     * Turns rows of (order_id, created_at, item_name, quantity, unit_price), grouped by order, into orders
+     * and hands each one over as soon as its last row has been read.
+     */
+    private static void readOrders(PreparedStatement statement, Consumer<Order> orderConsumer) throws SQLException {
+        try (ResultSet rs = statement.executeQuery()) {
+            String currentId = null;
+            LocalDateTime currentCreated = null;
+            List<OrderItem> currentItems = null;
+            while (rs.next()) {
+                String orderId = rs.getString(1);
+                if (!orderId.equals(currentId)) {
+                    if (currentId != null) orderConsumer.accept(new Order(currentId, currentCreated, currentItems));
+                    currentId = orderId;
+                    LocalDateTime createdAt = rs.getObject(2, LocalDateTime.class);
+                    currentCreated = createdAt != null ? createdAt : LocalDateTime.MIN;
+                    currentItems = new ArrayList<>();
+                }
+                String itemName = rs.getString(3);
+                if (itemName != null) currentItems.add(new OrderItem(itemName, rs.getInt(4), rs.getDouble(5)));
+            }
+            if (currentId != null) orderConsumer.accept(new Order(currentId, currentCreated, currentItems));
+        }
+    }
+
+    /**
+     * @return The condition selecting the orders of an inclusive date range, with the parameters bound by
+     *         {@link #bindRange}. A range open at the start also selects orders with no known creation time.
+     */
+    private static String inRange(LocalDate startDate) {
+        return isOpenStart(startDate) ? "(o.created_at IS NULL OR o.created_at < ?)" : "o.created_at >= ? AND o.created_at < ?";
+    }
+
+    /**
+     * Binds an inclusive date range as a half-open timestamp range, for a condition from {@link #inRange}.
+     * @return The index of the next parameter.
+     */
+    private static int bindRange(PreparedStatement statement, int firstIndex, LocalDate startDate, LocalDate endDate) throws SQLException {
+        int index = firstIndex;
+        if (!isOpenStart(startDate)) statement.setObject(index++, startDate.atStartOfDay());
+        statement.setObject(index++, endDate.isBefore(LATEST.toLocalDate()) ? endDate.plusDays(1).atStartOfDay() : LATEST);
+        return index;
+    }
+
+    private static boolean isOpenStart(LocalDate startDate) {
+        return !startDate.isAfter(EARLIEST.toLocalDate());
+    }
+
+    private static IOException databaseError(String message, SQLException e) {
+        return new IOException(message + ": " + e.getMessage(), e);
+    }
+}
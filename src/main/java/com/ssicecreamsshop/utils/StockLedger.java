@@ -0,0 +1,294 @@
+package com.ssicecreamsshop.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stock levels of the limited-stock menu items.
+ * Each item has one counter holding its on-hand quantity and the quantity reserved by orders that are
+ * still being saved; both are changed together with a compare-and-set, so checkouts never wait for each
+ * other or for a stock edit, and no update is lost. An order first reserves its stock, then commits the
+ * reservation once the order is saved (taking it off the on-hand quantity) or releases it if not.
+ * Committed changes are recorded in the menu journal by a write-behind task shortly afterwards, one small
+ * record per item whose stock changed, coalescing the changes of all orders placed in the meantime.
+ * The {@link MenuRepository} decides which items have counters and keeps them in step with the menu.
+ */
+public class StockLedger {
+
+    private static final long WRITE_BEHIND_DELAY_MILLIS = 500;
+
+    // Counters by item, and by item name alone for the order screen, which knows items only by name.
+    private static final Map<String, Counter> countersByItem = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> countersByName = new ConcurrentHashMap<>();
+    private static final AtomicLong version = new AtomicLong();
+    private static final Set<String> dirtyItemIds = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private static ScheduledExecutorService writeBehindExecutor;
+
+    /**
+     * Takes stock for an order off the available quantity of each limited-stock item. Either every line
+     * is reserved or none is. Items without a counter have unlimited stock and are skipped.
+     * @param quantitiesByItemName Quantity to reserve, by item name (case-insensitive).
+     * @return The reservation, to be committed or released by whoever saves the order.
+     * @throws OutOfStockException if an item does not have enough stock available.
+     */
+    public static Reservation reserve(Map<String, Integer> quantitiesByItemName) throws OutOfStockException {
+        List<Counter> counters = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : quantitiesByItemName.entrySet()) {
+            Counter counter = countersByName.get(MenuRepository.key(entry.getKey()));
+            if (counter == null) continue;
+            if (!counter.tryReserve(entry.getValue())) {
+                for (int i = 0; i < counters.size(); i++) {
+                    counters.get(i).release(quantities.get(i));
+                }
+                changed(false);
+                throw new OutOfStockException(entry.getKey(), entry.getValue(), counter.available());
+            }
+            counters.add(counter);
+            quantities.add(entry.getValue());
+        }
+        if (!counters.isEmpty()) changed(false);
+        return new Reservation(counters, quantities);
+    }
+
+    /**
+     * Stops the write-behind task and writes any stock changes it has not written yet.
+     */
+    public static synchronized void shutdown() {
+        if (writeBehindExecutor != null) {
+            writeBehindExecutor.shutdownNow();
+            writeBehindExecutor = null;
+        }
+        flushScheduled.set(false);
+        try {
+            MenuRepository.flush();
+        } catch (IOException e) {
+            System.err.println("Error saving stock levels: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return A number that changes whenever any available quantity changes.
+     */
+    static long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Takes the items whose committed stock has not been written yet off the pending list.
+     * @return Their item IDs; empty if there is nothing to write.
+     */
+    static List<String> takeDirtyItems() {
+        List<String> itemIds = new ArrayList<>();
+        for (String itemId : dirtyItemIds) {
+            if (dirtyItemIds.remove(itemId)) itemIds.add(itemId);
+        }
+        return itemIds;
+    }
+
+    /**
+     * Puts items back on the pending list after their stock could not be written.
+     */
+    static void markDirty(Collection<String> itemIds) {
+        dirtyItemIds.addAll(itemIds);
+    }
+
+    /**
+     * @return The counter of an item, created with the given on-hand quantity or updated to it.
+     *         Quantity reserved on an existing counter is kept.
+     */
+    static Counter track(String itemId, int onHand) {
+        Counter counter = countersByItem.computeIfAbsent(itemId, Counter::new);
+        counter.setOnHand(onHand);
+        version.incrementAndGet();
+        return counter;
+    }
+
+    static void untrack(String itemId) {
+        countersByItem.remove(itemId);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Puts back a counter taken away with {@link #untrack(String)}, with the reservations it still holds.
+     */
+    static void restore(String itemId, Counter counter) {
+        countersByItem.put(itemId, counter);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Drops the counters of items that are no longer on the menu.
+     */
+    static void retain(Set<String> itemIds) {
+        countersByItem.keySet().retainAll(itemIds);
+        version.incrementAndGet();
+    }
+
+    static Counter counter(String itemId) {
+        return countersByItem.get(itemId);
+    }
+
+    /**
+     * Sets which counter an order line for that item name draws from; null means the item has unlimited stock or does not exist.
+     */
+    static void bindName(String nameKey, String itemId) {
+        Counter counter = itemId == null ? null : countersByItem.get(itemId);
+        if (counter == null) countersByName.remove(nameKey);
+        else countersByName.put(nameKey, counter);
+    }
+
+    static void clearNames() {
+        countersByName.clear();
+    }
+
+    private static void changed(boolean committed) {
+        version.incrementAndGet();
+        if (committed) scheduleWriteBehind();
+        MenuRepository.stockChanged();
+    }
+
+    private static synchronized void scheduleWriteBehind() {
+        if (!flushScheduled.compareAndSet(false, true)) return;
+        if (writeBehindExecutor == null) {
+            writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "StockLedger-WriteBehind");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        writeBehindExecutor.schedule(StockLedger::writeBehind, WRITE_BEHIND_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void writeBehind() {
+        flushScheduled.set(false);
+        try {
+            MenuRepository.flush();
+        } catch (IOException e) {
+            System.err.println("Error saving stock levels, will retry: " + e.getMessage());
+            scheduleWriteBehind();
+        }
+    }
+
+    /**
+     * Stock taken by one order. Exactly one of {@link #commit()} or {@link #release()} takes effect; later calls do nothing.
+     */
+    public static final class Reservation {
+        private final List<Counter> counters;
+        private final List<Integer> quantities;
+        private final AtomicBoolean settled = new AtomicBoolean(false);
+
+        private Reservation(List<Counter> counters, List<Integer> quantities) {
+            this.counters = counters;
+            this.quantities = quantities;
+        }
+
+        /**
+         * Takes the reserved quantities off the on-hand stock; the change is written to disk shortly after.
+         */
+        public void commit() {
+            if (!settled.compareAndSet(false, true) || counters.isEmpty()) return;
+            for (int i = 0; i < counters.size(); i++) {
+                counters.get(i).commit(quantities.get(i));
+                dirtyItemIds.add(counters.get(i).itemId);
+            }
+            changed(true);
+        }
+
+        /**
+         * Makes the reserved quantities available again.
+         */
+        public void release() {
+            if (!settled.compareAndSet(false, true) || counters.isEmpty()) return;
+            for (int i = 0; i < counters.size(); i++) {
+                counters.get(i).release(quantities.get(i));
+            }
+            changed(false);
+        }
+    }
+
+    /**
+     * On-hand and reserved quantity of one item, packed into one long (on-hand in the high half) so both change atomically.
+     */
+    static final class Counter {
+        private final String itemId;
+        private final AtomicLong state = new AtomicLong();
+
+        private Counter(String itemId) {
+            this.itemId = itemId;
+        }
+
+        int onHand() {
+            return (int) (state.get() >> 32);
+        }
+
+        int available() {
+            long s = state.get();
+            return (int) (s >> 32) - (int) s;
+        }
+
+        boolean tryReserve(int quantity) {
+            while (true) {
+                long s = state.get();
+                int onHand = (int) (s >> 32);
+                int reserved = (int) s;
+                if (onHand - reserved < quantity) return false;
+                if (state.compareAndSet(s, pack(onHand, reserved + quantity))) return true;
+            }
+        }
+
+        void release(int quantity) {
+            state.getAndUpdate(s -> pack((int) (s >> 32), (int) s - quantity));
+        }
+
+        void commit(int quantity) {
+            state.getAndUpdate(s -> pack((int) (s >> 32) - quantity, (int) s - quantity));
+        }
+
+        void setOnHand(int onHand) {
+            state.getAndUpdate(s -> pack(onHand, (int) s));
+        }
+
+        void addOnHand(int delta) {
+            state.getAndUpdate(s -> pack((int) (s >> 32) + delta, (int) s));
+        }
+
+        private static long pack(int onHand, int reserved) {
+            return ((long) onHand << 32) | (reserved & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * Thrown when an order asks for more of an item than is available.
+     */
+    public static class OutOfStockException extends Exception {
+        private final String itemName;
+        private final int available;
+
+        OutOfStockException(String itemName, int requested, int available) {
+            super("Not enough stock for " + itemName + ". Required: " + requested + ", Available: " + available);
+            this.itemName = itemName;
+            this.available = available;
+        }
+
+        public String getItemName() {
+            return itemName;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package com.ssicecreamsshop.utils;
 
-import com.ssicecreamsshop.ManageInventoryView;
-import com.ssicecreamsshop.NewOrderView;
 import com.ssicecreamsshop.config.ConfigManager;
+import com.ssicecreamsshop.model.MenuCategory;
+import com.ssicecreamsshop.model.MenuItem;
+import com.ssicecreamsshop.model.MenuSnapshot;
 import javafx.application.Platform;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.api.methods.GetFile;
@@ -16,14 +15,10 @@ import org.telegram.telegrambots.meta.api.objects.PhotoSize;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
-import org.apache.poi.ss.usermodel.*;
 
-import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
@@ -31,10 +26,8 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class TelegramBotService {
 
@@ -126,11 +119,6 @@ public class TelegramBotService {
 
                         if (success) {
                             sendMessage(chatId, "✅ Item added successfully (without image)!\nName: " + itemName);
-                            Platform.runLater(() -> {
-                                ManageInventoryView.loadInventoryData();
-                                NewOrderView.loadMenuItemsFromJson();
-                                NewOrderView.refreshMenuView();
-                            });
                         } else {
                             sendMessage(chatId, "❌ Failed to add item. An item with this name might already exist.");
                         }
@@ -145,6 +133,8 @@ public class TelegramBotService {
                         + "*Available Commands:*\n"
                         + "`/menu` or `items` - Lists all available menu items.\n"
                         + "`/todayamt` or `today amt` - Shows total sales for today.\n"
+                        + "`/todayitems` or `today items` - Shows how much of each item sold today.\n"
+                        + "`/todayhours` or `today hours` - Shows today's sales by hour.\n"
                         + "`/shutdown` or `shut` - Closes the application.\n"
                         + "`/help` - Shows this help message.\n\n"
                         + "*How to Add an Item:*\n"
@@ -158,6 +148,10 @@ public class TelegramBotService {
             } else if (messageText.equalsIgnoreCase("today amt") || messageText.equalsIgnoreCase("/todayamt")) {
                 String todaysTotal = calculateTodaysTotal();
                 sendMessage(chatId, todaysTotal);
+            } else if (messageText.equalsIgnoreCase("today items") || messageText.equalsIgnoreCase("/todayitems")) {
+                sendMessage(chatId, listTodaysItemSales());
+            } else if (messageText.equalsIgnoreCase("today hours") || messageText.equalsIgnoreCase("/todayhours")) {
+                sendMessage(chatId, listTodaysHourlySales());
             } else if (messageText.equalsIgnoreCase("shut") || messageText.equalsIgnoreCase("/shutdown")) {
                 sendMessage(chatId, "Acknowledged. Shutting down the application...");
                 Platform.runLater(() -> {
@@ -169,99 +163,79 @@ public class TelegramBotService {
         }
 
         private String calculateTodaysTotal() {
-            String ordersPathStr = ConfigManager.getOrdersExcelPath();
-            java.io.File ordersFile = new java.io.File(ordersPathStr);
-
-            if (!ordersFile.exists() || ordersFile.length() == 0) {
-                return "No orders have been recorded yet.";
-            }
-
-            double dailyTotal = 0;
             LocalDate today = LocalDate.now();
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            Set<String> processedOrderIds = new HashSet<>();
-
-            try (FileInputStream fis = new FileInputStream(ordersFile);
-                 Workbook workbook = WorkbookFactory.create(fis)) {
-
-                Sheet sheet = workbook.getSheetAt(0);
-                if (sheet == null) return "Orders sheet not found.";
-
-                DataFormatter dataFormatter = new DataFormatter();
+            OrderStore.Totals todaysSummary;
+            try {
+                OrderStore orderStore = OrderExcelUtil.getOrderStore();
+                todaysSummary = orderStore.aggregate(today, today);
+                if (todaysSummary.getOrderCount() == 0 && !orderStore.hasOrders()) {
+                    return "No orders have been recorded yet.";
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return "Error calculating today's total. Please check the order store.";
+            }
 
-                for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                    Row row = sheet.getRow(i);
-                    if (row == null) continue;
+            return String.format("Total sales for today (%s): ₹%.2f", today.format(formatter), todaysSummary.getTotal());
+        }
 
-                    String orderId = dataFormatter.formatCellValue(row.getCell(0));
-                    if (orderId.isEmpty() || processedOrderIds.contains(orderId)) {
-                        continue;
-                    }
+        private String listTodaysItemSales() {
+            LocalDate today = LocalDate.now();
+            List<OrderStore.ItemTotals> itemSummaries;
+            try {
+                itemSummaries = OrderExcelUtil.getOrderStore().aggregateByItem(today, today);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return "Error calculating today's item sales. Please check the order store.";
+            }
+            if (itemSummaries.isEmpty()) return "No items sold today yet.";
 
-                    Cell dateCell = row.getCell(4);
-                    if (dateCell != null) {
-                        try {
-                            LocalDate rowDate = LocalDate.parse(dataFormatter.formatCellValue(dateCell), formatter);
-                            if (rowDate.isEqual(today)) {
-                                Cell totalCell = row.getCell(6);
-                                if (totalCell != null && totalCell.getCellType() == CellType.NUMERIC) {
-                                    dailyTotal += totalCell.getNumericCellValue();
-                                    processedOrderIds.add(orderId);
-                                }
-                            }
-                        } catch (Exception e) {
-                            // Ignore rows with malformed dates
-                        }
-                    }
-                }
+            StringBuilder sb = new StringBuilder("*Items sold today:*\n");
+            for (OrderStore.ItemTotals itemSummary : itemSummaries) {
+                sb.append(String.format("- %s: %d (₹%.2f)%n", itemSummary.getItemName(), itemSummary.getQuantity(), itemSummary.getTotal()));
+            }
+            return sb.toString();
+        }
 
-            } catch (Exception e) {
+        private String listTodaysHourlySales() {
+            LocalDate today = LocalDate.now();
+            double[] hourlyTotals;
+            try {
+                hourlyTotals = OrderExcelUtil.getOrderStore().aggregateByHour(today, today);
+            } catch (IOException e) {
                 e.printStackTrace();
-                return "Error calculating today's total. Please check the `orders.xlsx` file.";
+                return "Error calculating today's hourly sales. Please check the order store.";
             }
 
-            return String.format("Total sales for today (%s): ₹%.2f", today.format(formatter), dailyTotal);
+            StringBuilder sb = new StringBuilder("*Sales by hour today:*\n");
+            boolean anySales = false;
+            for (int hour = 0; hour < hourlyTotals.length; hour++) {
+                if (hourlyTotals[hour] == 0) continue;
+                sb.append(String.format("- %02d:00-%02d:59: ₹%.2f%n", hour, hour, hourlyTotals[hour]));
+                anySales = true;
+            }
+            return anySales ? sb.toString() : "No sales recorded today yet.";
         }
 
         private String listAllItems() {
             StringBuilder sb = new StringBuilder();
-            String menuJsonPathStr = ConfigManager.getMenuItemsJsonPath();
-            java.io.File menuFile = new java.io.File(menuJsonPathStr);
-
-            if (!menuFile.exists() || menuFile.length() == 0) {
+            MenuSnapshot menu = MenuRepository.getSnapshot();
+            if (menu.isEmpty()) {
                 return "No menu items found. Add some items first!";
             }
 
-            try {
-                String content = new String(Files.readAllBytes(menuFile.toPath()), StandardCharsets.UTF_8);
-                JSONObject rootJson = new JSONObject(content);
-                JSONArray categoriesArray = rootJson.optJSONArray("categories");
-                if (categoriesArray == null || categoriesArray.isEmpty()) {
-                    return "No menu items found.";
-                }
+            sb.append("```\n");
+            sb.append(String.format("%-4s | %-20s | %-15s | %s\n", "S.No", "Name", "Category", "Cost (₹)"));
+            sb.append("-----------------------------------------------------------\n");
 
-                sb.append("```\n");
-                sb.append(String.format("%-4s | %-20s | %-15s | %s\n", "S.No", "Name", "Category", "Cost (₹)"));
-                sb.append("-----------------------------------------------------------\n");
-
-                int sno = 1;
-                for (int i = 0; i < categoriesArray.length(); i++) {
-                    JSONObject categoryObj = categoriesArray.getJSONObject(i);
-                    String categoryName = categoryObj.getString("name");
-                    JSONArray itemsArray = categoryObj.getJSONArray("items");
-                    for (int j = 0; j < itemsArray.length(); j++) {
-                        JSONObject itemObj = itemsArray.getJSONObject(j);
-                        String itemName = itemObj.getString("name");
-                        int price = itemObj.getInt("price");
-                        sb.append(String.format("%-4d | %-20s | %-15s | %d\n", sno++, itemName, categoryName, price));
-                    }
+            int sno = 1;
+            for (MenuCategory category : menu.getCategories()) {
+                for (MenuItem item : category.getItems()) {
+                    sb.append(String.format("%-4d | %-20s | %-15s | %d\n", sno++, item.getName(), category.getName(), item.getPrice()));
                 }
-                sb.append("```\n");
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                return "Error reading the menu file.";
             }
+            sb.append("```\n");
 
             return sb.toString();
         }
@@ -309,16 +283,12 @@ public class TelegramBotService {
                     Files.copy(is, localFilePath, StandardCopyOption.REPLACE_EXISTING);
                 }
                 System.out.println("Successfully downloaded image to: " + localFilePath);
+                MenuThumbnails.generateInBackground(imageFileName);
 
                 boolean success = addItemToJson(category, itemName, price, imageFileName, null);
 
                 if (success) {
                     sendMessage(chatId, "✅ Item added successfully!\nName: " + itemName + "\nCategory: " + category + "\nPrice: " + price);
-                    Platform.runLater(() -> {
-                        ManageInventoryView.loadInventoryData();
-                        NewOrderView.loadMenuItemsFromJson();
-                        NewOrderView.refreshMenuView();
-                    });
                 } else {
                     sendMessage(chatId, "❌ Failed to add item. An item with this name might already exist.");
                 }
@@ -330,58 +300,11 @@ public class TelegramBotService {
             }
         }
 
-        private synchronized boolean addItemToJson(String categoryName, String itemName, int price, String imageName, Integer quantity) {
-            String menuJsonPathStr = ConfigManager.getMenuItemsJsonPath();
-            java.io.File menuFile = new java.io.File(menuJsonPathStr);
-            JSONObject rootJson;
+        private boolean addItemToJson(String categoryName, String itemName, int price, String imageName, Integer quantity) {
             try {
-                if (menuFile.getParentFile() != null && !menuFile.getParentFile().exists()) {
-                    menuFile.getParentFile().mkdirs();
-                }
-                if (menuFile.exists() && menuFile.length() > 0) {
-                    String content = new String(Files.readAllBytes(menuFile.toPath()), StandardCharsets.UTF_8);
-                    rootJson = new JSONObject(content);
-                } else {
-                    rootJson = new JSONObject();
-                    rootJson.put("categories", new JSONArray());
-                }
-
-                JSONArray categoriesArray = rootJson.getJSONArray("categories");
-                JSONObject targetCategory = null;
-                for (int i = 0; i < categoriesArray.length(); i++) {
-                    if (categoriesArray.getJSONObject(i).getString("name").equalsIgnoreCase(categoryName)) {
-                        targetCategory = categoriesArray.getJSONObject(i);
-                        break;
-                    }
-                }
-                if (targetCategory == null) {
-                    targetCategory = new JSONObject();
-                    targetCategory.put("name", categoryName);
-                    targetCategory.put("items", new JSONArray());
-                    categoriesArray.put(targetCategory);
-                }
-
-                JSONArray itemsArray = targetCategory.getJSONArray("items");
-                for (int i = 0; i < itemsArray.length(); i++) {
-                    if (itemsArray.getJSONObject(i).getString("name").equalsIgnoreCase(itemName)) {
-                        return false; // Item already exists
-                    }
-                }
-
-                JSONObject newItem = new JSONObject();
-                newItem.put("name", itemName);
-                newItem.put("imageName", imageName);
-                newItem.put("price", price);
-                if (quantity != null) {
-                    newItem.put("quantity", quantity);
-                }
-                itemsArray.put(newItem);
-
-                try (FileWriter writer = new FileWriter(menuFile)) {
-                    writer.write(rootJson.toString(4));
-                }
-                return true;
-            } catch (Exception e) {
+                // The menu repository writes the file and refreshes any open views.
+                return MenuRepository.addItem(categoryName, itemName, price, imageName, quantity);
+            } catch (IOException e) {
                 e.printStackTrace();
                 return false;
             }
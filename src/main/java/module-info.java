@@ -13,6 +13,10 @@ module com.example.ssicecreamsshop {
     requires java.prefs;
     requires org.apache.poi.poi;
     requires org.apache.poi.ooxml;
+    requires java.xml;
+    requires java.desktop;
+    requires java.sql;
+    requires com.h2database;
     requires telegrambots.meta;
     requires telegrambots;
 